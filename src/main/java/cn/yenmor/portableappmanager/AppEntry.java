@@ -2,6 +2,8 @@ package cn.yenmor.portableappmanager;
 
 import javafx.scene.image.Image;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 应用条目数据模型
@@ -11,6 +13,8 @@ public class AppEntry {
     private String name;        // 应用显示名称
     private String path;        // 应用相对路径
     private String iconPath;    // 图标文件路径
+    private List<String> excludes;  // 导出时排除的文件（glob，相对应用目录），没有时为null
+    private List<String> includes;  // 排除规则的例外，没有时为null
 
     public AppEntry(String id, String name, String path, String iconPath) {
         this.id = id;
@@ -19,6 +23,15 @@ public class AppEntry {
         this.iconPath = iconPath;
     }
 
+    /**
+     * 复制应用条目（规则列表也会复制）
+     */
+    public AppEntry(AppEntry other) {
+        this(other.id, other.name, other.path, other.iconPath);
+        this.excludes = other.excludes != null ? new ArrayList<>(other.excludes) : null;
+        this.includes = other.includes != null ? new ArrayList<>(other.includes) : null;
+    }
+
     public String getId() {
         return id;
     }
@@ -51,6 +64,28 @@ public class AppEntry {
         this.iconPath = iconPath;
     }
 
+    /**
+     * 导出时排除的文件和目录（规则格式见PathRules）
+     */
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public void setExcludes(List<String> excludes) {
+        this.excludes = excludes;
+    }
+
+    /**
+     * 排除规则的例外（被排除的目录中的文件不能重新包含）
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public void setIncludes(List<String> includes) {
+        this.includes = includes;
+    }
+
     /**
      * 获取应用文件的绝对路径
      */
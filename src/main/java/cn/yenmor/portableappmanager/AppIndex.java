@@ -0,0 +1,153 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 应用索引
+ * 按ID和名称（不区分大小写，与equalsIgnoreCase一致）查找应用，并为重名的应用生成 "名称 (n)" 形式的新名称，
+ * 每个名称记录下一个可能空闲的后缀，重复重命名时不需要从2开始逐个尝试
+ */
+public final class AppIndex {
+    private static final Pattern SUFFIX_PATTERN = Pattern.compile("(.*) \\((\\d+)\\)");
+
+    private final Map<String, AppEntry> byId;
+    private final Map<String, List<AppEntry>> byName;   // 只预留的名称对应空列表
+    private final Map<String, Integer> nextSuffix;
+
+    public AppIndex() {
+        this.byId = new HashMap<>();
+        this.byName = new HashMap<>();
+        this.nextSuffix = new HashMap<>();
+    }
+
+    public AppIndex(Collection<AppEntry> apps) {
+        this();
+        for (AppEntry app : apps) {
+            add(app);
+        }
+    }
+
+    /**
+     * 复制索引（之后对副本的修改不影响原索引）
+     */
+    public AppIndex(AppIndex other) {
+        this.byId = new HashMap<>(other.byId);
+        this.byName = new HashMap<>(other.byName.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<AppEntry>> entry : other.byName.entrySet()) {
+            byName.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        this.nextSuffix = new HashMap<>(other.nextSuffix);
+    }
+
+    /**
+     * 添加应用（同名的应用按添加顺序排列，按名称查找时返回第一个）
+     */
+    public void add(AppEntry app) {
+        byId.putIfAbsent(app.getId(), app);
+        byName.computeIfAbsent(normalize(app.getName()), key -> new ArrayList<>(1)).add(app);
+    }
+
+    /**
+     * 删除应用（名称空出后，之后生成的新名称可以再次使用它）
+     */
+    public void remove(AppEntry app) {
+        byId.remove(app.getId(), app);
+        String key = normalize(app.getName());
+        List<AppEntry> apps = byName.get(key);
+        if (apps != null && apps.remove(app) && apps.isEmpty()) {
+            releaseName(key);
+        }
+    }
+
+    /**
+     * 预留名称（例如将要导入的应用），之后生成的新名称不会与它重复
+     */
+    public void reserveName(String name) {
+        byName.computeIfAbsent(normalize(name), key -> new ArrayList<>(1));
+    }
+
+    /**
+     * 按ID查找应用
+     * @return 应用的副本，不存在时返回null
+     */
+    public AppEntry findById(String id) {
+        AppEntry app = byId.get(id);
+        return app != null ? new AppEntry(app) : null;
+    }
+
+    /**
+     * 按名称查找应用（不区分大小写）
+     * @return 第一个同名应用的副本，不存在时返回null
+     */
+    public AppEntry findByName(String name) {
+        List<AppEntry> apps = byName.get(normalize(name));
+        return apps != null && !apps.isEmpty() ? new AppEntry(apps.get(0)) : null;
+    }
+
+    /**
+     * 名称是否已被应用使用或预留（不区分大小写）
+     */
+    public boolean containsName(String name) {
+        return byName.containsKey(normalize(name));
+    }
+
+    /**
+     * 生成不重名的名称：名称未被使用时原样返回，否则添加最小的空闲后缀 " (n)"（n从2开始）
+     * 返回的名称不会自动预留
+     */
+    public String uniqueName(String name) {
+        String key = normalize(name);
+        if (!byName.containsKey(key)) {
+            return name;
+        }
+        // 小于记录值的后缀都已被使用（名称空出时会调低记录值）
+        int suffix = nextSuffix.getOrDefault(key, 2);
+        String candidate = name + " (" + suffix + ")";
+        while (byName.containsKey(normalize(candidate))) {
+            suffix++;
+            candidate = name + " (" + suffix + ")";
+        }
+        nextSuffix.put(key, suffix);
+        return candidate;
+    }
+
+    /**
+     * 应用数量
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 与String.equalsIgnoreCase一致的大小写折叠：逐个字符先转大写再转小写
+     * （整体转换小写时 'İ'、词尾的 'Σ' 等字符的结果与equalsIgnoreCase不同）
+     */
+    static String normalize(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        name.codePoints().forEach(c -> key.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return key.toString();
+    }
+
+    private void releaseName(String key) {
+        byName.remove(key);
+        Matcher matcher = SUFFIX_PATTERN.matcher(key);
+        if (matcher.matches()) {
+            try {
+                int suffix = Integer.parseInt(matcher.group(2));
+                if (suffix >= 2) {
+                    nextSuffix.computeIfPresent(matcher.group(1), (base, next) -> Math.min(next, suffix));
+                }
+            } catch (NumberFormatException e) {
+                // 后缀超出范围，不是生成的名称
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 应用配置仓库
+ * 在内存中保存解析后的应用列表，读取直接返回副本，不再每次读取和解析配置文件；
+ * 修改后延迟一段时间在后台写入（期间的多次修改合并为一次写入，写入期间的修改在写入完成后再次安排写入），
+ * 后台写入失败时逐渐延长间隔重试，退出时同步写入；
+ * 批量修改（ConfigBatch）作为一个事务立即写入。
+ * 写入方式由ConfigStore决定（完整的JSON文件或追加日志），写入中途崩溃不会留下不完整的配置；
+ * 日志存储需要压缩时在后台线程中进行。
+ * 配置文件被外部修改（修改时间变化且没有未保存的修改）时重新读取
+ */
+final class AppRepository {
+    private static final Logger logger = Logger.getLogger(AppRepository.class.getName());
+
+    /**
+     * 默认的写入延迟（毫秒），可通过系统属性 pam.config.flushDelay 修改
+     */
+    static final long DEFAULT_FLUSH_DELAY = 500;
+
+    /**
+     * 写入失败后第一次重试的延迟（毫秒），之后每次加倍，最长MAX_RETRY_DELAY
+     */
+    static final long RETRY_DELAY = 1000;
+    static final long MAX_RETRY_DELAY = 60_000;
+
+    private static final AppRepository INSTANCE = new AppRepository(ConfigStore.create());
+
+    private final ConfigStore store;
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private List<AppEntry> apps;
+    private List<AppEntry> saved;   // 已保存的应用列表（条目与apps共享，条目本身不会被修改）
+    private AppIndex index;         // apps的索引，需要时建立，整体替换列表时丢弃
+    private boolean dirty;
+    private long version;           // 每次修改加一，写入完成后据此判断期间是否又有修改
+    private long loadedModified;
+    private long flushDelay = Long.getLong("pam.config.flushDelay", DEFAULT_FLUSH_DELAY);
+    private ScheduledFuture<?> pendingFlush;
+    private long retryDelay;        // 下次重试的延迟，上次写入成功时为0
+    private boolean compactionScheduled;
+    private boolean compacting;     // 压缩期间文件的修改时间会变化，不作为外部修改
+
+    AppRepository(ConfigStore store) {
+        this.store = store;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "config-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 兜底：未正常关闭时（例如命令行使用）退出前写入未保存的修改
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "config-shutdown"));
+    }
+
+    static AppRepository getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 所有应用（副本，修改后需要通过仓库保存）
+     */
+    synchronized List<AppEntry> getApps() {
+        List<AppEntry> result = new ArrayList<>(apps().size());
+        for (AppEntry app : apps) {
+            result.add(new AppEntry(app));
+        }
+        return result;
+    }
+
+    /**
+     * 应用索引的副本（可以在副本中预留名称）
+     */
+    synchronized AppIndex getIndex() {
+        return new AppIndex(index());
+    }
+
+    /**
+     * 按ID查找应用
+     * @return 应用的副本，不存在时返回null
+     */
+    synchronized AppEntry findById(String id) {
+        return index().findById(id);
+    }
+
+    /**
+     * 替换全部应用
+     */
+    void setApps(List<AppEntry> newApps) {
+        List<AppEntry> copy = new ArrayList<>(newApps.size());
+        for (AppEntry app : newApps) {
+            copy.add(new AppEntry(app));
+        }
+        boolean writeNow;
+        synchronized (this) {
+            apps();     // 先读取已保存的配置，作为计算修改的基准
+            apps = copy;
+            index = null;
+            writeNow = changed();
+        }
+        if (writeNow) {
+            write();
+        }
+    }
+
+    /**
+     * 添加应用
+     */
+    void addAll(List<AppEntry> newApps) {
+        boolean writeNow;
+        synchronized (this) {
+            List<AppEntry> current = apps();
+            for (AppEntry app : newApps) {
+                AppEntry copy = new AppEntry(app);
+                current.add(copy);
+                if (index != null) {
+                    index.add(copy);
+                }
+            }
+            writeNow = changed();
+        }
+        if (writeNow) {
+            write();
+        }
+    }
+
+    /**
+     * 删除符合条件的应用
+     * @return 是否删除了应用
+     */
+    boolean removeIf(Predicate<AppEntry> filter) {
+        boolean writeNow;
+        synchronized (this) {
+            boolean removed = apps().removeIf(app -> {
+                if (!filter.test(app)) {
+                    return false;
+                }
+                if (index != null) {
+                    index.remove(app);
+                }
+                return true;
+            });
+            if (!removed) {
+                return false;
+            }
+            writeNow = changed();
+        }
+        if (writeNow) {
+            write();
+        }
+        return true;
+    }
+
+    /**
+     * 在应用列表的副本上依次执行操作，然后立即写入；任一操作失败或写入失败时配置保持不变
+     */
+    void commit(List<Consumer<List<AppEntry>>> operations) throws IOException {
+        synchronized (writeLock) {
+            synchronized (this) {
+                List<AppEntry> previous = apps();
+                List<AppEntry> updated = new ArrayList<>(previous);
+                for (Consumer<List<AppEntry>> operation : operations) {
+                    operation.accept(updated);
+                }
+                cancelPendingFlush();
+
+                // 写入期间保持锁，避免其他修改在回滚时丢失
+                try {
+                    store.save(saved, updated);
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Failed to save config", e);
+                    throw e;
+                }
+                apps = updated;
+                index = null;
+                saved = new ArrayList<>(updated);
+                dirty = false;
+                version++;
+                loadedModified = store.lastModified();
+                scheduleCompaction();
+            }
+        }
+    }
+
+    /**
+     * 设置写入延迟，期间的多次修改合并为一次写入
+     * @param millis 延迟（毫秒），不大于0时每次修改都立即同步写入
+     */
+    synchronized void setFlushDelay(long millis) {
+        this.flushDelay = millis;
+    }
+
+    /**
+     * 立即写入未保存的修改
+     */
+    void flush() {
+        synchronized (this) {
+            cancelPendingFlush();
+        }
+        write();
+    }
+
+    /**
+     * 退出时调用：写入未保存的修改，停止后台写入线程
+     */
+    void close() {
+        flush();
+        flusher.shutdown();
+        try {
+            // 等待正在进行或已安排的压缩完成
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Config compaction did not finish before exit");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 当前的应用列表（第一次访问或配置文件被外部修改时读取）
+     */
+    private List<AppEntry> apps() {
+        if (apps == null || (!dirty && !compacting && store.lastModified() != loadedModified)) {
+            apps = read();
+            index = null;
+        }
+        return apps;
+    }
+
+    private AppIndex index() {
+        List<AppEntry> current = apps();
+        if (index == null) {
+            index = new AppIndex(current);
+        }
+        return index;
+    }
+
+    private List<AppEntry> read() {
+        if (!store.exists()) {
+            // 尝试从旧的配置文件迁移，迁移结果随后保存为新格式
+            List<AppEntry> migrated = ConfigManager.migrateFromOldConfig();
+            if (!migrated.isEmpty()) {
+                dirty = true;
+                scheduleFlush();
+            }
+            saved = new ArrayList<>();
+            loadedModified = 0;
+            return migrated;
+        }
+
+        try {
+            List<AppEntry> loaded = store.load();
+            saved = new ArrayList<>(loaded);
+            loadedModified = store.lastModified();
+            return loaded;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to read config", e);
+            saved = new ArrayList<>();
+            loadedModified = store.lastModified();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 标记有未保存的修改，并安排写入
+     * @return 是否需要立即写入（由调用者在释放锁之后调用write，保持先写入锁后仓库锁的加锁顺序）
+     */
+    private boolean changed() {
+        dirty = true;
+        version++;
+        if (flushDelay <= 0) {
+            return true;
+        }
+        scheduleFlush();
+        return false;
+    }
+
+    private void scheduleFlush() {
+        scheduleFlush(flushDelay);
+    }
+
+    private void scheduleFlush(long delay) {
+        if ((pendingFlush == null || pendingFlush.isDone()) && !flusher.isShutdown()) {
+            pendingFlush = flusher.schedule(this::write, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelPendingFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+    }
+
+    /**
+     * 写入当前的应用列表（没有未保存的修改时不写入）
+     * 在写入锁内生成快照，保证较早的快照不会覆盖较新的内容；
+     * 写入期间又有修改时再次安排写入，写入失败时延长间隔后重试
+     */
+    private void write() {
+        synchronized (writeLock) {
+            List<AppEntry> previous;
+            List<AppEntry> snapshot;
+            long snapshotVersion;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                previous = saved;
+                snapshot = new ArrayList<>(apps);
+                snapshotVersion = version;
+            }
+
+            try {
+                store.save(previous, snapshot);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to save config", e);
+                synchronized (this) {
+                    retryDelay = retryDelay == 0 ? RETRY_DELAY : Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+                    // 当前任务可能就是pendingFlush，它还没有结束
+                    pendingFlush = null;
+                    scheduleFlush(retryDelay);
+                }
+                return;
+            }
+            synchronized (this) {
+                saved = snapshot;
+                dirty = version != snapshotVersion;
+                retryDelay = 0;
+                loadedModified = store.lastModified();
+                if (dirty) {
+                    pendingFlush = null;
+                    scheduleFlush();
+                }
+                scheduleCompaction();
+            }
+        }
+    }
+
+    /**
+     * 存储需要压缩时安排在后台线程中压缩
+     */
+    private void scheduleCompaction() {
+        if (!compactionScheduled && store.needsCompaction() && !flusher.isShutdown()) {
+            compactionScheduled = true;
+            flusher.execute(this::compact);
+        }
+    }
+
+    private void compact() {
+        synchronized (writeLock) {
+            List<AppEntry> snapshot;
+            synchronized (this) {
+                compactionScheduled = false;
+                compacting = true;
+                snapshot = saved;
+            }
+            try {
+                store.compact(snapshot);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to compact config", e);
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                    loadedModified = store.lastModified();
+                }
+            }
+        }
+    }
+}
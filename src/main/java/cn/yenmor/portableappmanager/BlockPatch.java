@@ -0,0 +1,371 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 块级二进制补丁
+ * 采用rsync的方式：把旧文件按固定大小分块，记录每块的弱校验和（可滚动计算）和MD5，
+ * 然后用滚动校验和在新文件中逐字节查找相同的块，补丁中只保存块引用和不匹配的数据。
+ * 生成和应用补丁都是流式处理，内存占用与文件大小无关（只保存每块的校验值）
+ * <p>
+ * 补丁格式：头部（魔数、块大小、旧文件大小、新文件大小），
+ * 随后是一系列操作：COPY（起始块号、块数）或 DATA（长度、数据），以 END 和新文件的CRC结束
+ */
+final class BlockPatch {
+    private static final int MAGIC = 0x50414D50; // "PAMP"
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_DATA = 2;
+    private static final int MIN_BLOCK_SIZE = 2048;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_LITERAL = 1024 * 1024;
+
+    private BlockPatch() {
+    }
+
+    /**
+     * 生成补丁的结果
+     * @param crc 新文件的CRC
+     * @param size 新文件大小
+     * @param sha256 新文件的SHA-256
+     * @param literalBytes 补丁中直接保存的数据量
+     */
+    record Result(long crc, long size, byte[] sha256, long literalBytes) {
+    }
+
+    /**
+     * 根据文件大小选择块大小（约为文件大小的平方根，与rsync相同）
+     */
+    static int blockSizeFor(long oldSize) {
+        int size = Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, Math.max(1, (long) Math.sqrt(oldSize))));
+        return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
+    }
+
+    /**
+     * 生成补丁
+     * @param oldData 旧文件的内容
+     * @param oldSize 旧文件大小
+     * @param newFile 新文件
+     * @param patchOut 补丁输出
+     * @return 新文件的校验信息和补丁中的数据量
+     */
+    static Result create(InputStream oldData, long oldSize, File newFile, OutputStream patchOut) throws IOException {
+        int blockSize = blockSizeFor(oldSize);
+        Signatures signatures = Signatures.read(oldData, blockSize);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(patchOut, ZipCodecPool.BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(blockSize);
+        out.writeLong(oldSize);
+        long newSize = newFile.length();
+        out.writeLong(newSize);
+        // 新文件的CRC在扫描完成后才知道，写在操作序列之后
+        Scanner scanner = new Scanner(signatures, blockSize, out);
+        try (InputStream in = new FileInputStream(newFile)) {
+            scanner.scan(in);
+        }
+        if (scanner.size != newSize) {
+            throw new IOException("File changed during export: " + newFile);
+        }
+        out.writeByte(OP_END);
+        out.writeLong(scanner.crc.getValue());
+        out.flush();
+
+        return new Result(scanner.crc.getValue(), scanner.size, scanner.digest.digest(), scanner.literalBytes);
+    }
+
+    /**
+     * 将补丁应用到已安装的文件：先写入同目录下的临时文件，校验通过后替换原文件
+     * @param patch 补丁数据
+     * @param target 已安装的旧文件
+     * @return 新文件大小
+     */
+    static long apply(InputStream patch, File target) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(patch, ZipCodecPool.BUFFER_SIZE));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid patch data for " + target);
+        }
+        int blockSize = in.readInt();
+        long oldSize = in.readLong();
+        long newSize = in.readLong();
+        if (!target.isFile() || target.length() != oldSize) {
+            throw new IOException("Cannot apply patch, installed file is missing or modified: " + target);
+        }
+
+        Path temp = target.toPath().resolveSibling(target.getName() + ".pam-patch");
+        CRC32 crc = new CRC32();
+        long written = 0;
+        ByteBuffer buffer = ZipCodecPool.acquireBuffer();
+        byte[] data = new byte[ZipCodecPool.BUFFER_SIZE];
+        try (FileChannel old = FileChannel.open(target.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int op;
+            while ((op = in.readUnsignedByte()) != OP_END) {
+                if (op == OP_COPY) {
+                    long position = (long) in.readInt() * blockSize;
+                    long length = (long) in.readInt() * blockSize;
+                    while (length > 0) {
+                        buffer.clear().limit((int) Math.min(buffer.capacity(), length));
+                        if (old.read(buffer, position) < 0) {
+                            throw new EOFException("Patch refers beyond the installed file: " + target);
+                        }
+                        buffer.flip();
+                        position += buffer.remaining();
+                        length -= buffer.remaining();
+                        written += writeAndUpdate(buffer, out, crc);
+                    }
+                } else if (op == OP_DATA) {
+                    int length = in.readInt();
+                    while (length > 0) {
+                        int chunk = Math.min(data.length, length);
+                        in.readFully(data, 0, chunk);
+                        length -= chunk;
+                        written += writeAndUpdate(ByteBuffer.wrap(data, 0, chunk), out, crc);
+                    }
+                } else {
+                    throw new IOException("Invalid patch data for " + target);
+                }
+            }
+            if (written != newSize || crc.getValue() != in.readLong()) {
+                throw new IOException("Patched file does not match the package: " + target);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            ZipCodecPool.releaseBuffer(buffer);
+        }
+
+        try {
+            Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return written;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private static int writeAndUpdate(ByteBuffer buffer, FileChannel out, CRC32 crc) throws IOException {
+        int length = buffer.remaining();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        return length;
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+
+    /**
+     * 弱校验和（与rsync相同的Adler-32变体），窗口移动一个字节时可以O(1)更新
+     */
+    private static int weakChecksum(int a, int b) {
+        return (a & 0xffff) | (b << 16);
+    }
+
+    /**
+     * 旧文件所有完整块的校验值
+     */
+    private static final class Signatures {
+        private final Map<Integer, int[]> blocksByWeak = new HashMap<>();
+        private byte[][] strong = new byte[16][];
+        private int count;
+
+        static Signatures read(InputStream in, int blockSize) throws IOException {
+            Signatures signatures = new Signatures();
+            MessageDigest md5 = newDigest("MD5");
+            byte[] block = new byte[blockSize];
+            while (in.readNBytes(block, 0, blockSize) == blockSize) {
+                int a = 0;
+                int b = 0;
+                for (int i = 0; i < blockSize; i++) {
+                    a += block[i] & 0xff;
+                    b += (blockSize - i) * (block[i] & 0xff);
+                }
+                signatures.add(weakChecksum(a, b), md5.digest(block));
+            }
+            return signatures;
+        }
+
+        private void add(int weak, byte[] digest) {
+            if (count == strong.length) {
+                strong = Arrays.copyOf(strong, count * 2);
+            }
+            strong[count] = digest;
+            int[] blocks = blocksByWeak.get(weak);
+            if (blocks == null) {
+                blocksByWeak.put(weak, new int[]{count});
+            } else if (blocks.length < 8) {
+                // 同一弱校验和只保留少量候选块，避免重复数据很多的文件比较过慢
+                int[] grown = Arrays.copyOf(blocks, blocks.length + 1);
+                grown[blocks.length] = count;
+                blocksByWeak.put(weak, grown);
+            }
+            count++;
+        }
+
+        /**
+         * 查找内容相同的块
+         * @return 块号，不存在时返回-1
+         */
+        int find(int weak, byte[] data, int offset, int length, MessageDigest md5) {
+            int[] blocks = blocksByWeak.get(weak);
+            if (blocks == null) {
+                return -1;
+            }
+            md5.update(data, offset, length);
+            byte[] digest = md5.digest();
+            for (int block : blocks) {
+                if (Arrays.equals(strong[block], digest)) {
+                    return block;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 在新文件中滚动查找旧文件的块，并输出补丁操作
+     */
+    private static final class Scanner {
+        private final Signatures signatures;
+        private final int blockSize;
+        private final DataOutputStream out;
+        private final CRC32 crc = new CRC32();
+        private final MessageDigest digest = newDigest("SHA-256");
+        private final MessageDigest md5 = newDigest("MD5");
+        private long size;
+        private long literalBytes;
+        private int copyStart = -1;
+        private int copyCount;
+
+        private Scanner(Signatures signatures, int blockSize, DataOutputStream out) {
+            this.signatures = signatures;
+            this.blockSize = blockSize;
+            this.out = out;
+        }
+
+        void scan(InputStream in) throws IOException {
+            byte[] buffer = new byte[Math.max(4 * blockSize, MAX_LITERAL + blockSize)];
+            int end = 0;       // 缓冲区中有效数据的结尾
+            int start = 0;     // 当前窗口的起点
+            int literal = 0;   // 尚未输出的不匹配数据的起点
+            boolean eof = false;
+            boolean rolling = false;
+            int a = 0;
+            int b = 0;
+
+            while (true) {
+                // 窗口数据不足时，先输出待定数据，再把剩余数据移到缓冲区开头并继续读取
+                if (end - start < blockSize && !eof) {
+                    flushLiteral(buffer, literal, start);
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                    literal = 0;
+                    while (end < buffer.length) {
+                        int read = in.read(buffer, end, buffer.length - end);
+                        if (read < 0) {
+                            eof = true;
+                            break;
+                        }
+                        crc.update(buffer, end, read);
+                        digest.update(buffer, end, read);
+                        size += read;
+                        end += read;
+                    }
+                }
+                if (end - start < blockSize) {
+                    break;
+                }
+
+                if (!rolling) {
+                    a = 0;
+                    b = 0;
+                    for (int i = 0; i < blockSize; i++) {
+                        a += buffer[start + i] & 0xff;
+                        b += (blockSize - i) * (buffer[start + i] & 0xff);
+                    }
+                    rolling = true;
+                }
+
+                int block = signatures.find(weakChecksum(a, b), buffer, start, blockSize, md5);
+                if (block >= 0) {
+                    flushLiteral(buffer, literal, start);
+                    addCopy(block);
+                    start += blockSize;
+                    literal = start;
+                    rolling = false;
+                    continue;
+                }
+
+                // 窗口后移一个字节
+                if (start - literal >= MAX_LITERAL) {
+                    flushLiteral(buffer, literal, start);
+                    literal = start;
+                }
+                if (start + blockSize < end) {
+                    int removed = buffer[start] & 0xff;
+                    int added = buffer[start + blockSize] & 0xff;
+                    a += added - removed;
+                    b += a - blockSize * removed;
+                    start++;
+                } else {
+                    // 窗口已到达缓冲区末尾，读取更多数据后重新计算
+                    start++;
+                    rolling = false;
+                }
+            }
+
+            flushLiteral(buffer, literal, end);
+            flushCopy();
+        }
+
+        private void addCopy(int block) throws IOException {
+            if (copyStart >= 0 && copyStart + copyCount == block) {
+                copyCount++;
+                return;
+            }
+            flushCopy();
+            copyStart = block;
+            copyCount = 1;
+        }
+
+        private void flushCopy() throws IOException {
+            if (copyStart >= 0) {
+                out.writeByte(OP_COPY);
+                out.writeInt(copyStart);
+                out.writeInt(copyCount);
+                copyStart = -1;
+            }
+        }
+
+        private void flushLiteral(byte[] buffer, int from, int to) throws IOException {
+            if (to <= from) {
+                return;
+            }
+            flushCopy();
+            out.writeByte(OP_DATA);
+            out.writeInt(to - from);
+            out.write(buffer, from, to - from);
+            literalBytes += to - from;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * 自适应压缩策略
+ * 已压缩格式（按扩展名判断）或试压缩文件开头一段数据后几乎无法变小的文件直接存储（STORED），
+ * 其余文件按配置的级别压缩（DEFLATED），避免在不可压缩的数据上浪费CPU
+ */
+class CompressionPolicy {
+    private static final Set<String> INCOMPRESSIBLE_EXTENSIONS = Set.of(
+            "zip", "jar", "war", "apk", "7z", "rar", "gz", "tgz", "bz2", "xz", "zst", "lz4", "cab", "msi",
+            "png", "jpg", "jpeg", "gif", "webp", "avif", "heic",
+            "mp3", "mp4", "m4a", "m4v", "aac", "ogg", "opus", "flac", "mkv", "webm", "avi", "mov", "wmv",
+            "docx", "xlsx", "pptx", "odt", "ods", "epub", "woff", "woff2");
+
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final long MIN_SAMPLED_SIZE = 4096;
+    private static final double STORE_RATIO = 0.95;
+
+    private final int level;
+    private final boolean adaptive;
+
+    CompressionPolicy(int level, boolean adaptive) {
+        this.level = level;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * 压缩级别（Deflater.DEFAULT_COMPRESSION 或 0-9）
+     */
+    int level() {
+        return level;
+    }
+
+    /**
+     * 为文件选择压缩方式
+     * @return ZipEntry.STORED 或 ZipEntry.DEFLATED
+     */
+    int chooseMethod(File file) throws IOException {
+        if (level == Deflater.NO_COMPRESSION) {
+            return ZipEntry.STORED;
+        }
+        if (!adaptive) {
+            return ZipEntry.DEFLATED;
+        }
+        if (INCOMPRESSIBLE_EXTENSIONS.contains(extensionOf(file.getName()))) {
+            return ZipEntry.STORED;
+        }
+        // 小文件直接压缩，试压缩的开销不值得
+        if (file.length() < MIN_SAMPLED_SIZE) {
+            return ZipEntry.DEFLATED;
+        }
+        return isCompressible(file) ? ZipEntry.DEFLATED : ZipEntry.STORED;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 以最快级别试压缩文件开头的一段数据，压缩率不足时认为文件不可压缩
+     */
+    private static boolean isCompressible(File file) throws IOException {
+        byte[] sample;
+        try (InputStream in = new FileInputStream(file)) {
+            sample = in.readNBytes(SAMPLE_SIZE);
+        }
+        if (sample.length == 0) {
+            return true;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] output = new byte[SAMPLE_SIZE];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(output);
+            }
+            return compressed < sample.length * STORE_RATIO;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
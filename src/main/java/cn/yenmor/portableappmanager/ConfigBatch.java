@@ -0,0 +1,87 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 配置批量修改
+ * 收集多个添加、删除和重命名操作，提交时作为一个事务应用：
+ * 全部操作完成后只写入一次配置文件（写入临时文件、刷新到磁盘后原子替换），写入失败时配置保持不变
+ */
+public class ConfigBatch {
+    private final List<Consumer<List<AppEntry>>> operations = new ArrayList<>();
+    private final List<String> removedIds = new ArrayList<>();
+
+    ConfigBatch() {
+    }
+
+    /**
+     * 添加应用
+     */
+    public ConfigBatch add(AppEntry app) {
+        AppEntry copy = new AppEntry(app);
+        operations.add(apps -> apps.add(copy));
+        return this;
+    }
+
+    /**
+     * 添加多个应用
+     */
+    public ConfigBatch addAll(List<AppEntry> newApps) {
+        for (AppEntry app : newApps) {
+            add(app);
+        }
+        return this;
+    }
+
+    /**
+     * 删除应用（同时删除其安装清单），不存在时忽略
+     */
+    public ConfigBatch remove(String appId) {
+        operations.add(apps -> apps.removeIf(app -> app.getId().equals(appId)));
+        removedIds.add(appId);
+        return this;
+    }
+
+    /**
+     * 重命名应用，不存在时忽略
+     */
+    public ConfigBatch rename(String appId, String newName) {
+        operations.add(apps -> {
+            for (int i = 0; i < apps.size(); i++) {
+                if (apps.get(i).getId().equals(appId)) {
+                    // 替换为副本，事务回滚时原有条目不受影响
+                    AppEntry renamed = new AppEntry(apps.get(i));
+                    renamed.setName(newName);
+                    apps.set(i, renamed);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 是否没有任何操作
+     */
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * 提交所有操作
+     * @throws IOException 写入配置文件失败（此时内存中的配置也保持不变）
+     */
+    public void commit() throws IOException {
+        if (operations.isEmpty()) {
+            return;
+        }
+        AppRepository.getInstance().commit(operations);
+        for (String appId : removedIds) {
+            InstallManifest.delete(appId);
+        }
+        operations.clear();
+        removedIds.clear();
+    }
+}
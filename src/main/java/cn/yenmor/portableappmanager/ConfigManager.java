@@ -1,75 +1,107 @@
 package cn.yenmor.portableappmanager;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-
 import java.io.*;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 /**
  * 配置管理器 - 负责读写应用的JSON配置
+ * 应用列表缓存在内存中（见AppRepository），单个修改在后台延迟写入，退出前调用flush；
+ * 需要一起生效的多个修改使用batch提交。
+ * 系统属性 pam.config.store=journal 时改用追加日志保存（见JournalConfigStore），config.json只用于导入导出
  */
 public class ConfigManager {
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private static final Type APP_LIST_TYPE = new TypeToken<List<AppEntry>>(){}.getType();
 
     /**
      * 读取所有应用配置
      */
     public static List<AppEntry> loadApps() {
-        File configFile = new File(ConstVars.CONFIG_FILE);
+        return AppRepository.getInstance().getApps();
+    }
 
-        if (!configFile.exists()) {
-            // 尝试从旧的配置文件迁移
-            return migrateFromOldConfig();
-        }
+    /**
+     * 按ID查找应用
+     * @return 应用的副本，不存在时返回null
+     */
+    public static AppEntry findApp(String appId) {
+        return AppRepository.getInstance().findById(appId);
+    }
 
-        try {
-            String json = new String(Files.readAllBytes(Paths.get(ConstVars.CONFIG_FILE)));
-            List<AppEntry> apps = gson.fromJson(json, APP_LIST_TYPE);
-            return apps != null ? apps : new ArrayList<>();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
+    /**
+     * 获取当前所有应用的索引（副本），用于按名称查找和生成不重名的名称
+     */
+    public static AppIndex getIndex() {
+        return AppRepository.getInstance().getIndex();
     }
 
     /**
      * 保存所有应用配置
      */
     public static void saveApps(List<AppEntry> apps) {
-        try {
-            String json = gson.toJson(apps);
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(ConstVars.CONFIG_FILE))) {
-                writer.write(json);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        AppRepository.getInstance().setApps(apps);
     }
 
     /**
      * 添加新应用
      */
     public static void addApp(AppEntry app) {
-        List<AppEntry> apps = loadApps();
-        apps.add(app);
-        saveApps(apps);
+        AppRepository.getInstance().addAll(List.of(app));
+    }
+
+    /**
+     * 批量添加应用（只写入一次配置文件）
+     */
+    public static void addApps(List<AppEntry> newApps) {
+        if (newApps.isEmpty()) {
+            return;
+        }
+        AppRepository.getInstance().addAll(newApps);
     }
 
     /**
      * 删除应用
      */
     public static void removeApp(String appId) {
-        List<AppEntry> apps = loadApps();
-        apps.removeIf(app -> app.getId().equals(appId));
-        saveApps(apps);
+        AppRepository.getInstance().removeIf(app -> app.getId().equals(appId));
+        InstallManifest.delete(appId);
+    }
+
+    /**
+     * 开始批量修改（多个操作作为一个事务提交，只写入一次配置文件）
+     */
+    public static ConfigBatch batch() {
+        return new ConfigBatch();
+    }
+
+    /**
+     * 立即写入未保存的配置（程序退出时调用）
+     */
+    public static void flush() {
+        AppRepository.getInstance().flush();
+    }
+
+    /**
+     * 设置配置的写入延迟，期间的多次修改合并为一次写入
+     * @param millis 延迟（毫秒），不大于0时每次修改都立即写入
+     */
+    public static void setFlushDelay(long millis) {
+        AppRepository.getInstance().setFlushDelay(millis);
+    }
+
+    /**
+     * 将所有应用导出为JSON配置文件（与config.json格式相同）
+     */
+    public static void exportConfig(File file) throws IOException {
+        new JsonConfigStore(file).save(List.of(), loadApps());
+    }
+
+    /**
+     * 从JSON配置文件导入，替换所有应用
+     */
+    public static void importConfig(File file) throws IOException {
+        List<AppEntry> apps = new JsonConfigStore(file).load();
+        AppRepository.getInstance().setApps(apps);
     }
 
     /**
@@ -80,9 +112,9 @@ public class ConfigManager {
     }
 
     /**
-     * 从旧的配置文件迁移数据
+     * 从旧的配置文件迁移数据（由AppRepository保存为新的JSON格式）
      */
-    private static List<AppEntry> migrateFromOldConfig() {
+    static List<AppEntry> migrateFromOldConfig() {
         List<AppEntry> apps = new ArrayList<>();
         File oldConfigFile = new File(ConstVars.OLD_CONFIG_FILE);
 
@@ -105,8 +137,6 @@ public class ConfigManager {
                     apps.add(entry);
                 }
             }
-            // 保存为新的JSON格式
-            saveApps(apps);
             System.out.println("Migrated " + apps.size() + " apps from old config");
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,61 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 应用配置的持久化方式
+ * 由系统属性 pam.config.store 选择：json（默认，每次写入完整的config.json）
+ * 或 journal（追加修改记录，后台压缩为快照，适合应用很多的配置）
+ */
+interface ConfigStore {
+
+    /**
+     * 是否已有保存的配置（没有时尝试从旧的配置文件迁移）
+     */
+    boolean exists();
+
+    /**
+     * 读取所有应用
+     */
+    List<AppEntry> load() throws IOException;
+
+    /**
+     * 保存应用列表
+     * @param saved 上次保存（或读取）的应用列表，未修改的条目为同一对象
+     * @param apps 当前的应用列表
+     */
+    void save(List<AppEntry> saved, List<AppEntry> apps) throws IOException;
+
+    /**
+     * 配置文件的修改时间，用于发现外部修改
+     */
+    long lastModified();
+
+    /**
+     * 是否需要压缩
+     */
+    default boolean needsCompaction() {
+        return false;
+    }
+
+    /**
+     * 压缩：把已保存的应用列表写为新的快照
+     * @param saved 上次保存的应用列表
+     */
+    default void compact(List<AppEntry> saved) throws IOException {
+    }
+
+    /**
+     * 按系统属性 pam.config.store 创建存储
+     */
+    static ConfigStore create() {
+        File configFile = new File(ConstVars.CONFIG_FILE);
+        if ("journal".equalsIgnoreCase(System.getProperty("pam.config.store"))) {
+            return new JournalConfigStore(new File(ConstVars.CONFIG_SNAPSHOT_FILE),
+                new File(ConstVars.CONFIG_JOURNAL_FILE), configFile);
+        }
+        return new JsonConfigStore(configFile);
+    }
+}
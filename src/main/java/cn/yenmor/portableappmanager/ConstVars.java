@@ -7,7 +7,15 @@ public class ConstVars {
     // 新的JSON配置文件
     public static final String CONFIG_FILE = "./PortableAppManager/config.json";
 
+    // 日志存储的快照和日志文件（系统属性 pam.config.store=journal 时使用）
+    public static final String CONFIG_SNAPSHOT_FILE = "./PortableAppManager/config.snapshot.json";
+    public static final String CONFIG_JOURNAL_FILE = "./PortableAppManager/config.journal";
+
+    // 全局导出规则
+    public static final String EXPORT_RULES_FILE = "./PortableAppManager/export-rules.json";
+
     // 目录常量
     public static final String INKS_DIR = "./PortableAppManager/Inks/";
     public static final String ICONS_DIR = "./PortableAppManager/icons/";
+    public static final String MANIFESTS_DIR = "./PortableAppManager/manifests/";
 }
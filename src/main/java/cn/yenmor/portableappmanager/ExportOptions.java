@@ -0,0 +1,134 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * 导出选项
+ * 控制软件包导出时的压缩方式和包格式
+ */
+public class ExportOptions {
+    private boolean parallel = true;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean deduplicate;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean adaptiveCompression = true;
+    private String baselinePackage;
+    private boolean delta;
+    private boolean binaryPatch;
+    private boolean solid;
+    private Consumer<ProgressEvent> progressListener;
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * 设置是否按内容去重（相同内容只保存一份），默认关闭
+     * 去重的包中重复的文件没有单独的条目，只在index.json中引用，旧版本的程序导入时会缺少这些文件
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * 设置压缩级别（Deflater.DEFAULT_COMPRESSION 或 0-9，0表示全部存储不压缩）
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isAdaptiveCompression() {
+        return adaptiveCompression;
+    }
+
+    /**
+     * 设置是否自适应压缩（已压缩格式和不可压缩的文件直接存储）
+     */
+    public void setAdaptiveCompression(boolean adaptiveCompression) {
+        this.adaptiveCompression = adaptiveCompression;
+    }
+
+    public String getBaselinePackage() {
+        return baselinePackage;
+    }
+
+    /**
+     * 设置基线包（之前导出的包，或从中取出的index.json）
+     * 增量模式下只导出变化的文件；否则导出完整的包，未变化文件的压缩数据直接从基线包复制
+     */
+    public void setBaselinePackage(String baselinePackage) {
+        this.baselinePackage = baselinePackage;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * 设置是否导出增量包（只包含相对基线包新增和变化的文件，以及删除列表）
+     */
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
+
+    public boolean isBinaryPatch() {
+        return binaryPatch;
+    }
+
+    /**
+     * 设置增量包中是否为较大的变化文件生成块级补丁（只保存与基线版本不同的块）
+     */
+    public void setBinaryPatch(boolean binaryPatch) {
+        this.binaryPatch = binaryPatch;
+    }
+
+    public boolean isSolid() {
+        return solid;
+    }
+
+    /**
+     * 设置是否使用固实模式（小文件拼接为较大的块一起压缩，适合包含大量小文件的应用；大文件仍单独保存）
+     */
+    public void setSolid(boolean solid) {
+        this.solid = solid;
+    }
+
+    public Consumer<ProgressEvent> getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * 设置进度监听器（在工作线程中调用，按固定频率合并发送）
+     */
+    public void setProgressListener(Consumer<ProgressEvent> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 实际使用的压缩线程数（非并行模式下为1）
+     */
+    int effectiveThreads() {
+        return parallel ? Math.max(1, threads) : 1;
+    }
+}
@@ -0,0 +1,314 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * 导出规划器
+ * 先计算所有选中应用目录的最小并集（同一目录或嵌套目录只保留最上层的根目录，
+ * 文件系统不区分大小写时按不区分大小写比较），每个根目录只遍历一次，避免重复压缩和重复的ZIP条目。
+ * 遍历时应用全局和各应用的排除规则，被排除的目录不再进入；
+ * 每个路径只使用包含它的最深的应用目录的规则，上层应用的规则不会排除嵌套在其中的其他选中应用
+ */
+class ExportPlanner {
+    private static final Logger logger = Logger.getLogger(ExportPlanner.class.getName());
+
+    /**
+     * 文件系统的路径是否不区分大小写（Windows）
+     */
+    private static final boolean CASE_INSENSITIVE = new File("a").equals(new File("A"));
+
+    /**
+     * 需要遍历的根目录
+     * @param dir 目录
+     * @param basePath 目录在ZIP中的前缀（例如 "MyDir/"，根目录为空字符串）
+     * @param label 用于进度显示的名称（包含的应用名称）
+     */
+    record Root(File dir, String basePath, String label) {
+    }
+
+    /**
+     * 待导出的文件
+     * @param rootIndex 所属根目录的序号，图标文件为-1
+     */
+    record Item(File file, String entryName, int rootIndex) {
+    }
+
+    /**
+     * 应用目录的排除规则
+     * @param basePath 应用目录在ZIP中的前缀（与所在根目录的写法一致），规则相对此目录匹配
+     * @param rules 排除规则，没有规则时为PathRules.NONE
+     */
+    record RuleScope(String basePath, PathRules rules) {
+    }
+
+    /**
+     * 导出计划
+     * @param ruleScopes 所有应用目录及其规则（没有规则的应用也在其中，用于确定嵌套目录使用的规则）
+     * @param excludedCount 被排除的文件和目录数（被排除目录中的内容不计）
+     */
+    record Plan(List<Root> roots, List<Item> items, List<PackageAppContent> contents,
+                List<RuleScope> ruleScopes, int excludedCount) {
+
+        /**
+         * 包中的路径是否被排除规则排除（包括位于被排除的目录中），与遍历时的判断一致
+         */
+        boolean isExcluded(String entryName) {
+            if (!hasRules(ruleScopes)) {
+                return false;
+            }
+            boolean pruned = false;
+            for (int i = entryName.indexOf('/'); i >= 0; i = entryName.indexOf('/', i + 1)) {
+                if (isAppBase(ruleScopes, entryName.substring(0, i + 1))) {
+                    pruned = false;
+                } else if (!pruned && ExportPlanner.isExcluded(ruleScopes, entryName.substring(0, i), true)) {
+                    pruned = true;
+                }
+            }
+            return pruned || ExportPlanner.isExcluded(ruleScopes, entryName, false);
+        }
+    }
+
+    private final ExportRules globalRules;
+    private int excludedCount;
+
+    /**
+     * 使用配置目录中保存的全局规则
+     */
+    ExportPlanner() {
+        this(ExportRules.load());
+    }
+
+    ExportPlanner(ExportRules globalRules) {
+        this.globalRules = globalRules != null ? globalRules : new ExportRules();
+    }
+
+    /**
+     * 为应用列表生成导出计划
+     */
+    Plan plan(List<AppEntry> apps) {
+        List<String> basePaths = new ArrayList<>();
+        for (AppEntry app : apps) {
+            basePaths.add(basePathOf(app));
+        }
+        List<Root> roots = computeRoots(apps, basePaths);
+
+        List<RuleScope> ruleScopes = new ArrayList<>();
+        for (int i = 0; i < apps.size(); i++) {
+            ruleScopes.add(new RuleScope(basePaths.get(i), globalRules.compileFor(apps.get(i))));
+        }
+
+        List<Item> items = new ArrayList<>();
+        excludedCount = 0;
+        for (int i = 0; i < roots.size(); i++) {
+            Root root = roots.get(i);
+            // 只有根目录之内的应用的规则可能生效
+            List<RuleScope> scopes = new ArrayList<>();
+            for (RuleScope scope : ruleScopes) {
+                if (scope.basePath().startsWith(root.basePath())) {
+                    scopes.add(scope);
+                }
+            }
+            collectDirectory(root.dir(), root.basePath(), i, hasRules(scopes) ? scopes : List.of(), false, items);
+        }
+
+        // 添加图标（多个应用共用同一图标时只添加一次）
+        Map<String, List<Integer>> iconOwners = new HashMap<>();
+        Map<String, File> iconFiles = new HashMap<>();
+        for (int i = 0; i < apps.size(); i++) {
+            AppEntry app = apps.get(i);
+            if (app.getIconPath() == null || app.getIconPath().isEmpty()) {
+                continue;
+            }
+            File iconFile = new File(app.getIconPath());
+            if (!iconFile.exists()) {
+                continue;
+            }
+
+            String entryName = "icons/" + iconFile.getName();
+            File existing = iconFiles.putIfAbsent(entryName, iconFile);
+            if (existing == null) {
+                items.add(new Item(iconFile, entryName, -1));
+            } else if (!existing.getAbsoluteFile().equals(iconFile.getAbsoluteFile())) {
+                logger.warning("Icon name conflict, keeping first: " + entryName);
+            }
+            iconOwners.computeIfAbsent(entryName, k -> new ArrayList<>()).add(i);
+        }
+
+        return new Plan(roots, items, buildContents(apps, basePaths, items, iconOwners), ruleScopes, excludedCount);
+    }
+
+    /**
+     * 计算应用在ZIP中的目录前缀（使用相对路径中的目录部分，例如："MyDir/app.exe" -> "MyDir/"）
+     */
+    static String basePathOf(AppEntry app) {
+        Path appDirPath = Paths.get(app.getPath()).normalize().getParent();
+        return appDirPath != null ? appDirPath.toString().replace('\\', '/') + "/" : "";
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 计算最小的根目录集合，保持应用原有的顺序
+     * 被其他根目录包含的应用目录改为与根目录相同的写法（只在文件系统不区分大小写时可能不同）
+     */
+    private List<Root> computeRoots(List<AppEntry> apps, List<String> basePaths) {
+        // 按路径长度排序，上层目录先于其子目录处理
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < apps.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt(i -> basePaths.get(i).length()));
+
+        List<String> rootPaths = new ArrayList<>();
+        Map<String, Integer> firstApp = new HashMap<>();
+        Map<String, List<String>> labels = new HashMap<>();
+        Map<String, File> dirs = new HashMap<>();
+        for (int i : order) {
+            String basePath = basePaths.get(i);
+            String covering = null;
+            for (String rootPath : rootPaths) {
+                if (basePath.regionMatches(CASE_INSENSITIVE, 0, rootPath, 0, rootPath.length())) {
+                    covering = rootPath;
+                    basePaths.set(i, rootPath + basePath.substring(rootPath.length()));
+                    break;
+                }
+            }
+            if (covering == null) {
+                covering = basePath;
+                rootPaths.add(basePath);
+                dirs.put(basePath, apps.get(i).getAbsoluteFile().getParentFile());
+            }
+            firstApp.merge(covering, i, Math::min);
+            labels.computeIfAbsent(covering, k -> new ArrayList<>()).add(apps.get(i).getName());
+        }
+
+        rootPaths.sort(Comparator.comparingInt(firstApp::get));
+        List<Root> roots = new ArrayList<>();
+        for (String rootPath : rootPaths) {
+            roots.add(new Root(dirs.get(rootPath), rootPath, String.join(", ", labels.get(rootPath))));
+        }
+        return roots;
+    }
+
+    /**
+     * 递归收集目录中的文件，跳过被排除的文件和目录
+     * @param pruned 目录已被排除，只因其中有其他选中的应用才进入（只收集通往应用目录的部分）
+     */
+    private void collectDirectory(File dir, String basePath, int rootIndex, List<RuleScope> scopes,
+                                  boolean pruned, List<Item> items) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            boolean directory = file.isDirectory();
+            String entryName = basePath + file.getName();
+            if ((entryName + "/").startsWith(PackageIndex.RESERVED_PREFIX)) {
+                // 包内保留的目录（文件索引），不能作为应用文件导出
+                logger.warning("Skipping reserved path: " + file);
+                continue;
+            }
+            if (!scopes.isEmpty()) {
+                String dirPath = entryName + "/";
+                if (directory && isAppBase(scopes, dirPath)) {
+                    // 其他选中应用的目录，之后只使用该应用的规则
+                    collectDirectory(file, dirPath, rootIndex, scopes, false, items);
+                    continue;
+                }
+                if (pruned || isExcluded(scopes, entryName, directory)) {
+                    if (directory && containsApp(scopes, dirPath)) {
+                        collectDirectory(file, dirPath, rootIndex, scopes, true, items);
+                    } else {
+                        excludedCount++;
+                    }
+                    continue;
+                }
+            }
+            if (directory) {
+                collectDirectory(file, entryName + "/", rootIndex, scopes, false, items);
+            } else {
+                items.add(new Item(file, entryName, rootIndex));
+            }
+        }
+    }
+
+    /**
+     * 按包含路径的最深的应用目录的规则判断是否排除（上层应用的规则不作用于嵌套的其他应用目录）
+     */
+    private static boolean isExcluded(List<RuleScope> scopes, String entryName, boolean directory) {
+        RuleScope deepest = null;
+        for (RuleScope scope : scopes) {
+            String basePath = scope.basePath();
+            if (entryName.length() > basePath.length() && entryName.startsWith(basePath)
+                    && (deepest == null || basePath.length() > deepest.basePath().length())) {
+                deepest = scope;
+            }
+        }
+        return deepest != null && deepest.rules().excludes(entryName.substring(deepest.basePath().length()), directory);
+    }
+
+    /**
+     * 目录（以 "/" 结尾）是否为某个选中应用的目录
+     */
+    private static boolean isAppBase(List<RuleScope> scopes, String dirPath) {
+        for (RuleScope scope : scopes) {
+            if (scope.basePath().equals(dirPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 目录（以 "/" 结尾）中是否有选中应用的目录
+     */
+    private static boolean containsApp(List<RuleScope> scopes, String dirPath) {
+        for (RuleScope scope : scopes) {
+            if (scope.basePath().length() > dirPath.length() && scope.basePath().startsWith(dirPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasRules(List<RuleScope> scopes) {
+        for (RuleScope scope : scopes) {
+            if (!scope.rules().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记录每个应用的条目列表和字节总数（应用包含其目录下的全部文件及自己的图标）
+     */
+    private List<PackageAppContent> buildContents(List<AppEntry> apps, List<String> basePaths, List<Item> items,
+                                                  Map<String, List<Integer>> iconOwners) {
+        List<PackageAppContent> contents = new ArrayList<>();
+        for (AppEntry app : apps) {
+            contents.add(new PackageAppContent(app.getId()));
+        }
+
+        for (Item item : items) {
+            long size = item.file().length();
+            if (item.rootIndex() < 0) {
+                for (int i : iconOwners.getOrDefault(item.entryName(), List.of())) {
+                    contents.get(i).addEntry(item.entryName(), size);
+                }
+                continue;
+            }
+            for (int i = 0; i < apps.size(); i++) {
+                if (item.entryName().startsWith(basePaths.get(i))) {
+                    contents.get(i).addEntry(item.entryName(), size);
+                }
+            }
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,97 @@
+package cn.yenmor.portableappmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 全局导出规则
+ * 对所有应用生效的排除和包含规则（规则格式见PathRules），保存在配置目录的export-rules.json中；
+ * 每个应用自己的规则保存在AppEntry中，与全局规则合并使用
+ */
+public class ExportRules {
+    private static final Logger logger = Logger.getLogger(ExportRules.class.getName());
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private List<String> excludes;
+    private List<String> includes;
+
+    public ExportRules() {
+        this.excludes = new ArrayList<>();
+        this.includes = new ArrayList<>();
+    }
+
+    /**
+     * 排除规则（例如 "*.dmp"、"logs/"、"Crashpad/"）
+     */
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public void setExcludes(List<String> excludes) {
+        this.excludes = excludes;
+    }
+
+    /**
+     * 包含规则（排除规则的例外）
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public void setIncludes(List<String> includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * 合并全局规则和应用自己的规则
+     */
+    PathRules compileFor(AppEntry app) {
+        return PathRules.compile(concat(excludes, app.getExcludes()), concat(includes, app.getIncludes()));
+    }
+
+    /**
+     * 保存全局规则（写入临时文件后原子替换，中途崩溃不会留下不完整的文件）
+     */
+    public void save() throws IOException {
+        JsonConfigStore.replaceFile(new File(ConstVars.EXPORT_RULES_FILE), writer -> gson.toJson(this, writer));
+    }
+
+    /**
+     * 读取全局规则
+     * @return 规则，文件不存在或无法读取时返回空规则
+     */
+    public static ExportRules load() {
+        File file = new File(ConstVars.EXPORT_RULES_FILE);
+        if (!file.isFile()) {
+            return new ExportRules();
+        }
+        try {
+            ExportRules rules = gson.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8), ExportRules.class);
+            return rules != null ? rules : new ExportRules();
+        } catch (IOException | JsonParseException e) {
+            logger.log(Level.WARNING, "Failed to read export rules: " + file, e);
+            return new ExportRules();
+        }
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> result = new ArrayList<>();
+        if (first != null) {
+            result.addAll(first);
+        }
+        if (second != null) {
+            result.addAll(second);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 导入选项
+ * 控制软件包导入时的解压方式和导入的应用范围
+ */
+public class ImportOptions {
+    private boolean parallel = true;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Set<String> appIds;
+    private boolean skipUnchanged;
+    private boolean trustModificationTime;
+    private VerifyMode verifyMode = VerifyMode.FAST;
+    private Consumer<ProgressEvent> progressListener;
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public Set<String> getAppIds() {
+        return appIds;
+    }
+
+    /**
+     * 设置只导入的应用（包内的应用ID），为null时导入全部应用
+     */
+    public void setAppIds(Set<String> appIds) {
+        this.appIds = appIds;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * 设置是否跳过与包中内容相同的已有文件（按大小和CRC判断，完整校验模式下同时比较SHA-256）
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public boolean isTrustModificationTime() {
+        return trustModificationTime;
+    }
+
+    /**
+     * 设置跳过未变化文件时，大小和修改时间都相同是否直接认为未变化（不再计算CRC）
+     * 默认关闭：开启后，修改时间在2秒内且大小不变的修改会被当作未变化而跳过
+     */
+    public void setTrustModificationTime(boolean trustModificationTime) {
+        this.trustModificationTime = trustModificationTime;
+    }
+
+    public VerifyMode getVerifyMode() {
+        return verifyMode;
+    }
+
+    /**
+     * 设置解压时的校验模式（默认只校验CRC），校验在解压线程中随写入一并进行
+     */
+    public void setVerifyMode(VerifyMode verifyMode) {
+        this.verifyMode = verifyMode;
+    }
+
+    public Consumer<ProgressEvent> getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * 设置进度监听器（在工作线程中调用，按固定频率合并发送）
+     */
+    public void setProgressListener(Consumer<ProgressEvent> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 判断包内的应用是否被选中导入
+     */
+    boolean isSelected(AppEntry app) {
+        return appIds == null || appIds.contains(app.getId());
+    }
+
+    /**
+     * 实际使用的解压线程数（非并行模式下为1）
+     */
+    int effectiveThreads() {
+        return parallel ? Math.max(1, threads) : 1;
+    }
+}
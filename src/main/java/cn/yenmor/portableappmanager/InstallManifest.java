@@ -0,0 +1,121 @@
+package cn.yenmor.portableappmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 应用安装清单
+ * 记录应用导入或导出时目录中每个文件的大小和哈希，保存在清单目录中（按应用ID命名），
+ * 用于之后检查已安装的应用是否完整
+ */
+public class InstallManifest {
+    private static final Logger logger = Logger.getLogger(InstallManifest.class.getName());
+
+    private String appId;
+    private String basePath;
+    private String createdDate;
+    private List<PackageFileEntry> files;
+
+    private static final Gson gson = new Gson();
+
+    public InstallManifest() {
+        this.createdDate = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        this.files = new ArrayList<>();
+    }
+
+    public InstallManifest(String appId, String basePath) {
+        this();
+        this.appId = appId;
+        this.basePath = basePath;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public void setAppId(String appId) {
+        this.appId = appId;
+    }
+
+    /**
+     * 应用目录相对于根目录的前缀（例如 "MyDir/"），检查多余文件时只扫描此目录
+     */
+    public String getBasePath() {
+        return basePath;
+    }
+
+    public void setBasePath(String basePath) {
+        this.basePath = basePath;
+    }
+
+    public String getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(String createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    /**
+     * 文件记录（路径与包内路径相同，图标为 "icons/" 开头）
+     */
+    public List<PackageFileEntry> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<PackageFileEntry> files) {
+        this.files = files;
+    }
+
+    /**
+     * 保存到清单目录（写入临时文件后原子替换）
+     */
+    public void save() throws IOException {
+        JsonConfigStore.replaceFile(fileOf(appId), writer -> gson.toJson(this, writer));
+    }
+
+    /**
+     * 读取应用的安装清单
+     * @return 清单，没有记录或记录无法解析时返回null（只影响这个应用的检查结果）
+     */
+    public static InstallManifest load(String appId) throws IOException {
+        File file = fileOf(appId);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InstallManifest manifest = gson.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8),
+                    InstallManifest.class);
+            if (manifest == null || manifest.getFiles() == null) {
+                logger.warning("Ignoring empty install manifest: " + file);
+                return null;
+            }
+            return manifest;
+        } catch (JsonParseException e) {
+            logger.log(Level.WARNING, "Ignoring invalid install manifest: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 删除应用的安装清单（不存在时忽略）
+     */
+    public static void delete(String appId) {
+        fileOf(appId).delete();
+    }
+
+    private static File fileOf(String appId) {
+        return new File(ConstVars.MANIFESTS_DIR + appId + ".json");
+    }
+}
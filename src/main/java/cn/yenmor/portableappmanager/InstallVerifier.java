@@ -0,0 +1,290 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 安装检查引擎
+ * 按导入或导出时保存的安装清单检查应用目录，报告缺失、损坏和多余的文件。
+ * 所有应用的文件进入同一个有界队列，由固定数量的工作线程计算哈希；
+ * 队列已满时由提交线程自己处理，内存占用与应用和文件数量无关
+ */
+class InstallVerifier {
+    private static final Logger logger = Logger.getLogger(InstallVerifier.class.getName());
+
+    private final VerifyMode mode;
+    private final int threads;
+    private final ProgressTracker tracker;
+
+    /**
+     * @param mode 校验模式：NONE只比较大小，FAST比较CRC，FULL比较SHA-256
+     * @param threads 工作线程数
+     * @param progressListener 进度监听器，可为null
+     */
+    InstallVerifier(VerifyMode mode, int threads, Consumer<ProgressEvent> progressListener) {
+        this.mode = mode != null ? mode : VerifyMode.FULL;
+        this.threads = Math.max(1, threads);
+        this.tracker = new ProgressTracker(progressListener);
+    }
+
+    /**
+     * 检查应用的安装情况
+     * @param apps 应用列表
+     * @param targetBasePath 应用所在的基础路径
+     * @return 每个应用的检查结果
+     */
+    List<VerifyReport> verify(List<AppEntry> apps, String targetBasePath) throws IOException {
+        List<VerifyReport> reports = new ArrayList<>();
+        List<InstallManifest> manifests = new ArrayList<>();
+        long totalFiles = 0;
+        long totalBytes = 0;
+        for (AppEntry app : apps) {
+            InstallManifest manifest = InstallManifest.load(app.getId());
+            manifests.add(manifest);
+            reports.add(new VerifyReport(app, manifest != null));
+            if (manifest != null) {
+                totalFiles += manifest.getFiles().size();
+                for (PackageFileEntry file : manifest.getFiles()) {
+                    totalBytes += file.getSize();
+                }
+            }
+        }
+        tracker.start(ProgressEvent.Phase.VERIFYING, totalFiles, totalBytes);
+        ExportRules exportRules = ExportRules.load();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), newThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (int i = 0; i < apps.size(); i++) {
+                InstallManifest manifest = manifests.get(i);
+                if (manifest == null) {
+                    continue;
+                }
+                VerifyReport report = reports.get(i);
+                report.setCheckedFiles(manifest.getFiles().size());
+                for (PackageFileEntry file : manifest.getFiles()) {
+                    File target = PackageImporter.resolveTarget(file.getPath(), targetBasePath);
+                    pool.execute(() -> checkFile(report, file, target));
+                }
+                // 工作线程计算哈希的同时扫描多余的文件
+                findExtraFiles(report, manifest, exportRules.compileFor(apps.get(i)), targetBasePath);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Verification interrupted");
+        }
+
+        for (VerifyReport report : reports) {
+            Collections.sort(report.getMissingFiles());
+            Collections.sort(report.getCorruptFiles());
+            Collections.sort(report.getExtraFiles());
+        }
+        tracker.enter(ProgressEvent.Phase.DONE);
+        return reports;
+    }
+
+    /**
+     * 为导入的应用保存安装清单（包中没有文件索引或应用内容记录时不保存）
+     * @param sourceApps 包中的应用
+     * @param importedApps 导入后的应用（与sourceApps一一对应）
+     */
+    static void recordImport(PackageEntry packageEntry, PackageIndex index, List<AppEntry> sourceApps,
+                             List<AppEntry> importedApps) {
+        if (index == null) {
+            return;
+        }
+        Map<String, PackageFileEntry> records = index.toPathMap();
+        for (int i = 0; i < sourceApps.size(); i++) {
+            PackageAppContent content = packageEntry.getAppContent(sourceApps.get(i).getId());
+            if (content != null) {
+                save(importedApps.get(i), content.getEntries(), records);
+            }
+        }
+    }
+
+    /**
+     * 为导出的应用保存安装清单（导出的内容即为应用当前的状态）
+     * @param contents 每个应用的条目列表
+     * @param fileRecords 导出时记录的文件信息
+     */
+    static void recordExport(List<AppEntry> apps, List<PackageAppContent> contents, List<PackageFileEntry> fileRecords) {
+        Map<String, PackageFileEntry> records = new HashMap<>(fileRecords.size() * 2);
+        for (PackageFileEntry file : fileRecords) {
+            records.put(file.getPath(), file);
+        }
+        for (int i = 0; i < apps.size(); i++) {
+            save(apps.get(i), contents.get(i).getEntries(), records);
+        }
+    }
+
+    /**
+     * 为合并导入的应用保存安装清单：应用目录下（及其图标）实际解压的文件
+     * @param items 解压的文件（同一路径只保留最后一个包中的条目）
+     */
+    static void recordMerge(List<AppEntry> mergedApps, Collection<PackageImporter.ExtractItem> items) {
+        Map<String, PackageFileEntry> records = new HashMap<>(items.size() * 2);
+        for (PackageImporter.ExtractItem item : items) {
+            if (item.entry().isDirectory()) {
+                continue;
+            }
+            records.put(item.targetName(), item.file() != null ? item.file()
+                    : new PackageFileEntry(item.targetName(), item.entry().size(), item.entry().crc(), null));
+        }
+        for (AppEntry app : mergedApps) {
+            String basePath = ExportPlanner.basePathOf(app);
+            String icon = app.getIconPath() != null && !app.getIconPath().isEmpty()
+                    ? "icons/" + new File(app.getIconPath()).getName() : null;
+            List<String> entries = new ArrayList<>();
+            for (String path : records.keySet()) {
+                if ((!basePath.isEmpty() && path.startsWith(basePath)) || path.equals(icon)) {
+                    entries.add(path);
+                }
+            }
+            save(app, entries, records);
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 保存应用的安装清单，失败时只记录日志（不影响导入导出）
+     */
+    private static void save(AppEntry app, List<String> entries, Map<String, PackageFileEntry> records) {
+        InstallManifest manifest = new InstallManifest(app.getId(), ExportPlanner.basePathOf(app));
+        for (String path : entries) {
+            PackageFileEntry record = records.get(path);
+            if (record == null) {
+                continue;
+            }
+            // 只保留内容信息，不需要包内的存储方式
+            PackageFileEntry file = new PackageFileEntry(path, record.getSize(), record.getCrc(), record.getSha256());
+            file.setMtime(record.getMtime());
+            manifest.getFiles().add(file);
+        }
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save install manifest: " + app.getName(), e);
+        }
+    }
+
+    /**
+     * 检查单个文件（在工作线程中执行）
+     */
+    private void checkFile(VerifyReport report, PackageFileEntry file, File target) {
+        if (!target.isFile()) {
+            synchronized (report) {
+                report.getMissingFiles().add(file.getPath());
+            }
+        } else if (target.length() != file.getSize() || !contentMatches(file, target)) {
+            synchronized (report) {
+                report.getCorruptFiles().add(file.getPath());
+            }
+        }
+        tracker.advance(1, file.getSize());
+    }
+
+    /**
+     * 按校验模式比较文件内容（无法读取的文件视为损坏）
+     */
+    private boolean contentMatches(PackageFileEntry file, File target) {
+        if (mode == VerifyMode.NONE) {
+            return true;
+        }
+        boolean fullHash = mode == VerifyMode.FULL && file.getSha256() != null;
+        CRC32 crc = new CRC32();
+        MessageDigest digest = fullHash ? newSha256() : null;
+        ByteBuffer buffer = ZipCodecPool.acquireBuffer();
+        try (FileChannel in = FileChannel.open(target.toPath())) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer);
+                } else {
+                    crc.update(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read: " + target, e);
+            return false;
+        } finally {
+            ZipCodecPool.releaseBuffer(buffer);
+        }
+        return digest != null
+                ? HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(file.getSha256())
+                : crc.getValue() == file.getCrc();
+    }
+
+    /**
+     * 查找应用目录中不在清单里的文件（应用位于根目录时不检查，以免把其他应用都算作多余）
+     * 被导出规则排除的文件（日志、缓存等）本来就不在清单中，不算作多余
+     */
+    private static void findExtraFiles(VerifyReport report, InstallManifest manifest, PathRules rules,
+                                       String targetBasePath) throws IOException {
+        String basePath = manifest.getBasePath();
+        if (basePath == null || basePath.isEmpty()) {
+            return;
+        }
+        Path dir = new File(targetBasePath, basePath).toPath();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        Set<String> known = new HashSet<>();
+        for (PackageFileEntry file : manifest.getFiles()) {
+            known.add(file.getPath());
+        }
+        List<String> extra = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                String relative = dir.relativize(path).toString().replace('\\', '/');
+                String name = basePath + relative;
+                if (!known.contains(name) && !rules.excludesFileOrParent(relative)) {
+                    extra.add(name);
+                }
+            });
+        }
+        synchronized (report) {
+            report.getExtraFiles().addAll(extra);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "install-verify-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,346 @@
+package cn.yenmor.portableappmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * 日志配置存储
+ * 每次保存只把修改（添加或更新、删除，顺序变化时为完整列表）作为一行追加到日志文件并刷新到磁盘，
+ * 一次保存中的所有修改在同一行中，读取时不完整的最后一行被丢弃，因此一次保存要么全部生效要么全部无效。
+ * 日志超过快照大小时在后台压缩：写入新一代的快照，再换成只有文件头的新日志；
+ * 读取时加载快照并重放同一代的日志（代数不同说明压缩中途中断，此时快照已包含日志中的所有修改）。
+ * 没有快照和日志时从config.json导入
+ */
+final class JournalConfigStore implements ConfigStore {
+    private static final Logger logger = Logger.getLogger(JournalConfigStore.class.getName());
+    private static final Gson gson = new Gson();
+
+    /**
+     * 日志小于此大小时不压缩
+     */
+    static final long COMPACT_MIN_BYTES = 256 * 1024;
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final File importFile;
+    private long generation;
+    private long snapshotSize;
+    private long journalSize = -1;  // 当前代的日志大小，-1表示需要创建新日志
+
+    /**
+     * 日志文件头
+     */
+    private static class Header {
+        long generation;
+    }
+
+    /**
+     * 一条修改记录，三个字段只有一个不为null
+     */
+    private static class Record {
+        AppEntry put;
+        String remove;
+        List<AppEntry> reset;
+    }
+
+    JournalConfigStore(File snapshotFile, File journalFile, File importFile) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        this.importFile = importFile;
+    }
+
+    @Override
+    public boolean exists() {
+        return snapshotFile.exists() || journalFile.exists() || importFile.exists();
+    }
+
+    @Override
+    public List<AppEntry> load() throws IOException {
+        generation = 0;
+        snapshotSize = 0;
+        journalSize = -1;
+        if (!snapshotFile.exists() && !journalFile.exists()) {
+            // 第一次使用：从config.json导入并立即写入快照
+            List<AppEntry> imported = new JsonConfigStore(importFile).load();
+            compact(imported);
+            logger.info("Imported " + imported.size() + " apps from " + importFile);
+            return imported;
+        }
+
+        List<AppEntry> apps = new ArrayList<>();
+        if (snapshotFile.exists()) {
+            readSnapshot(apps);
+            snapshotSize = snapshotFile.length();
+        }
+        if (journalFile.exists()) {
+            return replay(apps);
+        }
+        return apps;
+    }
+
+    @Override
+    public void save(List<AppEntry> saved, List<AppEntry> apps) throws IOException {
+        List<Record> records = diff(saved, apps);
+        if (records.isEmpty()) {
+            return;
+        }
+        byte[] line = (gson.toJson(records) + "\n").getBytes(StandardCharsets.UTF_8);
+        if (journalSize < 0) {
+            byte[] header = (gson.toJson(header(generation)) + "\n").getBytes(StandardCharsets.UTF_8);
+            JsonConfigStore.replaceFile(journalFile, new String(header, StandardCharsets.UTF_8));
+            journalSize = header.length;
+        }
+
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.position(journalSize);
+            try {
+                ByteBuffer data = ByteBuffer.wrap(line);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                // 去掉写了一半的记录，之后的追加不会与它混在同一行
+                channel.truncate(journalSize);
+                throw e;
+            }
+        }
+        journalSize += line.length;
+    }
+
+    @Override
+    public long lastModified() {
+        return Math.max(snapshotFile.lastModified(), journalFile.lastModified());
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return journalSize > Math.max(COMPACT_MIN_BYTES, snapshotSize);
+    }
+
+    @Override
+    public void compact(List<AppEntry> saved) throws IOException {
+        long next = generation + 1;
+        JsonConfigStore.replaceFile(snapshotFile, writer -> {
+            JsonWriter json = JsonConfigStore.newJsonWriter(writer, true);
+            json.beginObject();
+            json.name("generation").value(next);
+            json.name("apps");
+            JsonConfigStore.writeApps(json, saved);
+            json.endObject();
+            json.flush();
+        });
+        generation = next;
+        snapshotSize = snapshotFile.length();
+
+        String header = gson.toJson(header(generation)) + "\n";
+        JsonConfigStore.replaceFile(journalFile, header);
+        journalSize = header.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 以流的方式读取快照（代数和应用列表）
+     */
+    private void readSnapshot(List<AppEntry> apps) throws IOException {
+        try (JsonReader reader = JsonConfigStore.openReader(snapshotFile)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "generation" -> generation = reader.nextLong();
+                    case "apps" -> JsonConfigStore.readApps(reader, apps);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid config snapshot: " + snapshotFile, e);
+        }
+    }
+
+    private static Header header(long generation) {
+        Header header = new Header();
+        header.generation = generation;
+        return header;
+    }
+
+    /**
+     * 在快照上重放日志，遇到不完整或无法解析的行时停止，并截断日志以便继续追加
+     */
+    private List<AppEntry> replay(List<AppEntry> snapshot) throws IOException {
+        byte[] data = Files.readAllBytes(journalFile.toPath());
+        int end = indexOf(data, 0);
+        if (end < 0) {
+            return snapshot;
+        }
+        try {
+            Header header = gson.fromJson(new String(data, 0, end, StandardCharsets.UTF_8), Header.class);
+            if (header == null || header.generation != generation) {
+                // 压缩在替换日志之前中断，快照已经包含这些修改
+                return snapshot;
+            }
+        } catch (JsonParseException e) {
+            logger.warning("Ignoring invalid config journal header: " + journalFile);
+            return snapshot;
+        }
+
+        // 按列表重放（重复的ID原样保留），更新保持原有位置，新条目追加在末尾，删除的位置先置为null
+        List<AppEntry> apps = new ArrayList<>(snapshot);
+        Map<String, Integer> positions = new HashMap<>();
+        indexPositions(apps, positions);
+
+        int valid = end + 1;
+        int count = 0;
+        while (valid < data.length) {
+            end = indexOf(data, valid);
+            if (end < 0) {
+                logger.warning("Discarding incomplete record at end of config journal");
+                break;
+            }
+            Record[] records;
+            try {
+                records = gson.fromJson(new String(data, valid, end - valid, StandardCharsets.UTF_8), Record[].class);
+            } catch (JsonParseException e) {
+                logger.warning("Discarding config journal from invalid record at offset " + valid);
+                break;
+            }
+            if (records != null) {
+                for (Record record : records) {
+                    apply(apps, positions, record);
+                }
+            }
+            valid = end + 1;
+            count++;
+        }
+
+        if (valid < data.length) {
+            try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        journalSize = valid;
+        logger.fine("Replayed " + count + " config journal records");
+        apps.removeIf(Objects::isNull);
+        return apps;
+    }
+
+    private static int indexOf(byte[] data, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 记录每个ID第一次出现的位置（有重复ID时保存的是完整列表，添加和删除只会作用于唯一的条目）
+     */
+    private static void indexPositions(List<AppEntry> apps, Map<String, Integer> positions) {
+        positions.clear();
+        for (int i = 0; i < apps.size(); i++) {
+            positions.putIfAbsent(apps.get(i).getId(), i);
+        }
+    }
+
+    private static void apply(List<AppEntry> apps, Map<String, Integer> positions, Record record) {
+        if (record.reset != null) {
+            apps.clear();
+            apps.addAll(record.reset);
+            indexPositions(apps, positions);
+        } else if (record.remove != null) {
+            Integer position = positions.remove(record.remove);
+            if (position != null) {
+                apps.set(position, null);
+            }
+        } else if (record.put != null) {
+            Integer position = positions.get(record.put.getId());
+            if (position != null) {
+                apps.set(position, record.put);
+            } else {
+                positions.put(record.put.getId(), apps.size());
+                apps.add(record.put);
+            }
+        }
+    }
+
+    /**
+     * 计算从saved到apps的修改记录
+     * 删除不存在的ID，添加或更新新的和变化的条目；重放结果的顺序与apps不同（或有重复ID）时改为完整列表
+     */
+    private static List<Record> diff(List<AppEntry> saved, List<AppEntry> apps) {
+        Map<String, AppEntry> previous = new HashMap<>();
+        for (AppEntry app : saved) {
+            if (previous.put(app.getId(), app) != null) {
+                return List.of(reset(apps));
+            }
+        }
+
+        List<Record> records = new ArrayList<>();
+        Set<String> current = new HashSet<>();
+        List<String> added = new ArrayList<>();
+        for (AppEntry app : apps) {
+            if (!current.add(app.getId())) {
+                return List.of(reset(apps));
+            }
+            AppEntry old = previous.get(app.getId());
+            if (old == null) {
+                added.add(app.getId());
+            }
+            if (old == null || !sameEntry(old, app)) {
+                Record record = new Record();
+                record.put = app;
+                records.add(record);
+            }
+        }
+        List<Record> removed = new ArrayList<>();
+        List<String> replayed = new ArrayList<>(apps.size());
+        for (AppEntry app : saved) {
+            if (current.contains(app.getId())) {
+                replayed.add(app.getId());
+            } else {
+                Record record = new Record();
+                record.remove = app.getId();
+                removed.add(record);
+            }
+        }
+
+        // 更新不改变位置，新条目追加在末尾
+        replayed.addAll(added);
+        for (int i = 0; i < apps.size(); i++) {
+            if (!apps.get(i).getId().equals(replayed.get(i))) {
+                return List.of(reset(apps));
+            }
+        }
+        removed.addAll(records);
+        return removed;
+    }
+
+    private static Record reset(List<AppEntry> apps) {
+        Record record = new Record();
+        record.reset = apps;
+        return record;
+    }
+
+    private static boolean sameEntry(AppEntry a, AppEntry b) {
+        if (a == b) {
+            return true;
+        }
+        JsonElement left = gson.toJsonTree(a);
+        return left.equals(gson.toJsonTree(b));
+    }
+}
@@ -0,0 +1,156 @@
+package cn.yenmor.portableappmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON配置存储
+ * 每次保存都写入完整的应用列表（同时也是配置的导入导出格式）。
+ * 读写都以流的方式直接在UTF-8的缓冲通道上逐个处理条目，不在内存中生成完整的JSON字符串；
+ * 紧凑模式（系统属性 pam.config.compact=true）不缩进和换行，文件更小
+ */
+final class JsonConfigStore implements ConfigStore {
+    private static final Gson gson = new Gson();
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final boolean compact;
+
+    JsonConfigStore(File file) {
+        this(file, Boolean.getBoolean("pam.config.compact"));
+    }
+
+    JsonConfigStore(File file, boolean compact) {
+        this.file = file;
+        this.compact = compact;
+    }
+
+    /**
+     * 写入文件内容
+     */
+    interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    @Override
+    public boolean exists() {
+        return file.exists();
+    }
+
+    @Override
+    public List<AppEntry> load() throws IOException {
+        try (JsonReader reader = openReader(file)) {
+            List<AppEntry> apps = new ArrayList<>();
+            readApps(reader, apps);
+            return apps;
+        } catch (EOFException e) {
+            // 空文件
+            return new ArrayList<>();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Invalid config file: " + file, e);
+        }
+    }
+
+    @Override
+    public void save(List<AppEntry> saved, List<AppEntry> apps) throws IOException {
+        replaceFile(file, writer -> {
+            JsonWriter json = newJsonWriter(writer, compact);
+            writeApps(json, apps);
+            json.flush();
+        });
+    }
+
+    @Override
+    public long lastModified() {
+        return file.lastModified();
+    }
+
+    /**
+     * 以流的方式读取UTF-8的JSON文件
+     */
+    static JsonReader openReader(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8);
+        return new JsonReader(new BufferedReader(reader, BUFFER_SIZE));
+    }
+
+    static JsonWriter newJsonWriter(Writer writer, boolean compact) {
+        JsonWriter json = new JsonWriter(writer);
+        if (!compact) {
+            json.setIndent("  ");
+        }
+        return json;
+    }
+
+    /**
+     * 逐个读取应用数组中的条目
+     */
+    static void readApps(JsonReader reader, List<AppEntry> apps) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            AppEntry app = gson.fromJson(reader, AppEntry.class);
+            if (app != null) {
+                apps.add(app);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * 逐个写入应用数组中的条目
+     */
+    static void writeApps(JsonWriter writer, List<AppEntry> apps) throws IOException {
+        writer.beginArray();
+        for (AppEntry app : apps) {
+            gson.toJson(app, AppEntry.class, writer);
+        }
+        writer.endArray();
+    }
+
+    /**
+     * 写入临时文件并刷新到磁盘，再原子替换目标文件（文件系统不支持原子移动时直接替换）
+     */
+    static void replaceFile(File file, String content) throws IOException {
+        replaceFile(file, writer -> writer.write(content));
+    }
+
+    /**
+     * 写入临时文件并刷新到磁盘，再原子替换目标文件（文件系统不支持原子移动时直接替换）
+     * @param content 通过带缓冲的UTF-8 Writer写入内容
+     */
+    static void replaceFile(File file, Content content) throws IOException {
+        Path target = file.toPath().toAbsolutePath().normalize();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+                content.writeTo(writer);
+                writer.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
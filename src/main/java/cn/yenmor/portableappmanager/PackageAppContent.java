@@ -0,0 +1,55 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 软件包中单个应用的内容
+ * 记录应用对应的ZIP条目列表和字节总数，用于按应用选择性导入
+ */
+public class PackageAppContent {
+    private String appId;
+    private List<String> entries;
+    private long totalSize;
+
+    public PackageAppContent() {
+        this.entries = new ArrayList<>();
+    }
+
+    public PackageAppContent(String appId) {
+        this();
+        this.appId = appId;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public void setAppId(String appId) {
+        this.appId = appId;
+    }
+
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<String> entries) {
+        this.entries = entries;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    /**
+     * 添加一个条目并累计大小
+     */
+    public void addEntry(String entryName, long size) {
+        entries.add(entryName);
+        totalSize += size;
+    }
+}
@@ -5,6 +5,7 @@ import com.google.gson.GsonBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 软件包条目
@@ -13,12 +14,17 @@ import java.util.List;
 public class PackageEntry {
     private PackageMetadata metadata;
     private List<AppEntry> appEntries;
+    private List<PackageAppContent> appContents;
+    private List<String> deletedFiles;
+    private List<PackageSolidBlock> solidBlocks;
+    private Map<String, String> blobs;
 
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
     public PackageEntry() {
         this.metadata = new PackageMetadata();
         this.appEntries = new ArrayList<>();
+        this.appContents = new ArrayList<>();
     }
 
     public PackageMetadata getMetadata() {
@@ -40,6 +46,65 @@ public class PackageEntry {
         }
     }
 
+    public List<PackageAppContent> getAppContents() {
+        return appContents;
+    }
+
+    public void setAppContents(List<PackageAppContent> appContents) {
+        this.appContents = appContents;
+    }
+
+    /**
+     * 增量包中相对基线已删除的文件，完整包为null
+     */
+    public List<String> getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public void setDeletedFiles(List<String> deletedFiles) {
+        this.deletedFiles = deletedFiles;
+    }
+
+    /**
+     * 固实模式下小文件所在的块，普通包为null
+     */
+    public List<PackageSolidBlock> getSolidBlocks() {
+        return solidBlocks;
+    }
+
+    public void setSolidBlocks(List<PackageSolidBlock> solidBlocks) {
+        this.solidBlocks = solidBlocks;
+    }
+
+    /**
+     * 内容去重的文件 -> 保存相同内容的条目（与index.json中的blob一致，写在文件之前，供流式导入使用）
+     * 开启去重的包总有此记录（可能为空），未去重或旧版本的包为null
+     */
+    public Map<String, String> getBlobs() {
+        return blobs;
+    }
+
+    public void setBlobs(Map<String, String> blobs) {
+        this.blobs = blobs;
+    }
+
+    /**
+     * 查找应用对应的包内容
+     * @param appId 应用ID
+     * @return 包内容，旧版本的包没有记录时返回null
+     */
+    public PackageAppContent getAppContent(String appId) {
+        if (appContents == null) {
+            return null;
+        }
+        for (PackageAppContent content : appContents) {
+            if (content.getAppId() != null && content.getAppId().equals(appId)) {
+                return content;
+            }
+        }
+        return null;
+    }
+
     /**
      * 转换为JSON字符串
      */
@@ -0,0 +1,934 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * 软件包导出引擎
+ * 在工作线程池中并行压缩各个文件（小文件压缩到内存，大文件压缩到临时文件），
+ * 再按原有顺序拼接为一个ZIP文件，包内结构与顺序导出完全一致。
+ * 读取和压缩使用池化的直接缓冲区与Deflater，临时文件和较大的存储条目通过transferTo直接写入输出。
+ * 不可压缩的文件按压缩策略直接存储。每个文件的SHA-256在压缩线程中随读取一并计算，
+ * 记录在包末尾的.pam/index.json中，用于导入时校验；开启去重时在写入清单之前计算大小相同的文件的哈希，
+ * 内容相同的文件只保存一次（由其中第一个文件保存），引用关系同时记录在清单中。
+ * 指定基线包时与其index.json比较（大小和修改时间相同，或内容相同即视为未变化）：
+ * 增量模式下只写入新增和变化的文件，并在清单中记录删除的文件；
+ * 否则仍生成完整的包，未变化文件的压缩数据直接从基线包复制，不重新压缩。
+ * 增量模式下还可以为较大的变化文件生成块级补丁（patches/目录下），只保存变化的块。
+ * 固实模式下，同一目录中的小文件按顺序拼接为约1 MB的块（solid/目录下）作为一个条目压缩，
+ * 块的组成记录在manifest.json中；大文件、内容重复或可能与基线相同的文件仍单独保存
+ */
+class PackageExporter {
+    private static final Logger logger = Logger.getLogger(PackageExporter.class.getName());
+    private static final long IN_MEMORY_LIMIT = 4L * 1024 * 1024;
+    private static final long PATCH_MIN_SIZE = 1024 * 1024;
+    private static final String PATCH_PREFIX = "patches/";
+    private static final long SOLID_FILE_LIMIT = 64 * 1024;
+    private static final long SOLID_BLOCK_SIZE = 1024 * 1024;
+    private static final String SOLID_PREFIX = "solid/";
+
+    private final ExportOptions options;
+    private final CompressionPolicy compressionPolicy;
+    private final Consumer<String> progressCallback;
+    private final ProgressTracker tracker;
+    private final Map<String, FileHash> hashes = new HashMap<>();     // 规划后只读
+    private final Map<String, String> blobs = new LinkedHashMap<>();  // 内容去重的文件 -> 保存内容的条目
+    private final List<PackageFileEntry> fileRecords = new ArrayList<>();
+    private Map<Long, Integer> sizeCounts = Map.of();
+    private Map<String, PackageFileEntry> baseline;
+    private ZipArchiveReader baselineZip;
+    private int reusedCount;
+    private int patchedCount;
+
+    /**
+     * 压缩任务：单个文件，或固实块中的多个小文件（block不为null时）
+     */
+    private record Unit(ExportPlanner.Item item, PackageSolidBlock block, List<ExportPlanner.Item> members) {
+    }
+
+    /**
+     * 规划时计算的文件内容（大小相同、可能参与去重的文件），unchanged表示与基线相同
+     */
+    private record FileHash(long size, long crc, String sha256, boolean unchanged) {
+    }
+
+    /**
+     * 压缩完成的条目，数据位于内存或临时文件中（较大的存储条目在写入时直接从源文件复制）
+     */
+    private static final class CompressedEntry {
+        private final ExportPlanner.Item item;
+        private final long time;
+        private int method = ZipEntry.DEFLATED;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private String sha256;
+        private String blob;
+        private boolean unchanged;
+        private ZipArchiveReader.Entry reused;
+        private String patchEntry;
+        private long patchCrc;
+        private long patchSize;
+        private ByteBuffer data;
+        private Path spillFile;
+        private PackageSolidBlock block;
+        private List<PackageFileEntry> members;
+
+        private CompressedEntry(ExportPlanner.Item item, long time) {
+            this.item = item;
+            this.time = time;
+        }
+
+        private void discard() {
+            if (spillFile != null) {
+                try {
+                    Files.deleteIfExists(spillFile);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to delete temp file: " + spillFile, e);
+                }
+                spillFile = null;
+            }
+            data = null;
+        }
+    }
+
+    PackageExporter(ExportOptions options, Consumer<String> progressCallback) {
+        this.options = options != null ? options : new ExportOptions();
+        this.compressionPolicy = new CompressionPolicy(this.options.getCompressionLevel(),
+                this.options.isAdaptiveCompression());
+        this.progressCallback = progressCallback;
+        this.tracker = new ProgressTracker(this.options.getProgressListener());
+    }
+
+    /**
+     * 将应用导出为ZIP写入指定通道
+     * @param apps 应用列表
+     * @param packageEntry 包清单
+     * @param channel 输出通道
+     */
+    void export(List<AppEntry> apps, PackageEntry packageEntry, WritableByteChannel channel) throws IOException {
+        // 先规划：合并重叠的应用目录，每个目录只遍历一次
+        ExportPlanner.Plan plan = new ExportPlanner().plan(apps);
+        List<ExportPlanner.Item> items = plan.items();
+        packageEntry.setAppContents(plan.contents());
+        if (plan.excludedCount() > 0) {
+            report(String.format("Excluded %d files and folders by export rules", plan.excludedCount()));
+        }
+
+        try {
+            if (options.getBaselinePackage() != null) {
+                openBaseline(options.getBaselinePackage());
+                if (options.isDelta()) {
+                    packageEntry.getMetadata().setBaseline(new File(options.getBaselinePackage()).getName());
+                    packageEntry.setDeletedFiles(findDeletedFiles(plan));
+                }
+            }
+            // 每个文件的哈希记录在index.json中，用于校验、去重和基线比较；
+            // 只有旧版本的程序无法正确导入的包（去重、增量、固实）标记为2.0格式
+            if (options.isDeduplicate() || options.isDelta() || options.isSolid()) {
+                packageEntry.getMetadata().setVersion(PackageMetadata.FORMAT_V2);
+            }
+            if (options.isDeduplicate()) {
+                sizeCounts = countSizes(items);
+                planBlobs(items);
+                packageEntry.setBlobs(blobs);
+            }
+            List<Unit> units = planUnits(plan, packageEntry);
+
+            writePackage(packageEntry, plan, units, channel);
+            InstallVerifier.recordExport(apps, plan.contents(), fileRecords);
+        } finally {
+            if (baselineZip != null) {
+                baselineZip.close();
+            }
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 按顺序写入清单、所有文件和文件索引
+     */
+    private void writePackage(PackageEntry packageEntry, ExportPlanner.Plan plan, List<Unit> units,
+                              WritableByteChannel channel) throws IOException {
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(channel)) {
+            // 添加manifest.json
+            report("Adding manifest...");
+            writeBytes(writer, "manifest.json", packageEntry.toJson().getBytes(StandardCharsets.UTF_8));
+
+            long totalBytes = 0;
+            for (ExportPlanner.Item item : plan.items()) {
+                totalBytes += item.file().length();
+            }
+            tracker.start(ProgressEvent.Phase.EXPORTING, plan.items().size(), totalBytes);
+            writeItems(writer, units, plan.roots());
+
+            report("Finalizing package...");
+            tracker.enter(ProgressEvent.Phase.FINALIZING);
+            if (baseline != null) {
+                reportBaseline(packageEntry.getDeletedFiles());
+            }
+            reportDeduplication();
+            PackageIndex index = new PackageIndex();
+            index.setFiles(fileRecords);
+            writeBytes(writer, PackageIndex.ENTRY_NAME, index.toJson().getBytes(StandardCharsets.UTF_8));
+        }
+        tracker.enter(ProgressEvent.Phase.DONE);
+    }
+
+    /**
+     * 读取基线包的文件索引，并保持基线包打开（用于复制未变化的条目或生成补丁）
+     * @param path 基线包，或单独保存的index.json
+     */
+    private void openBaseline(String path) throws IOException {
+        if (!new File(path).isFile()) {
+            throw new FileNotFoundException("Baseline package not found: " + path);
+        }
+
+        PackageIndex index;
+        if (path.toLowerCase().endsWith(".json")) {
+            index = PackageIndex.fromJson(Files.readString(Path.of(path), StandardCharsets.UTF_8));
+        } else {
+            baselineZip = ZipArchiveReader.open(Path.of(path));
+            index = PackageManager.readIndex(baselineZip);
+        }
+        if (index == null) {
+            // 1.0格式的包没有文件索引
+            throw new IOException("Baseline package has no file index: " + path);
+        }
+        baseline = index.toPathMap();
+    }
+
+    /**
+     * 基线包中保存文件内容的条目（需要内容仍保存在基线包中，且与记录一致）
+     */
+    private ZipArchiveReader.Entry reusableEntry(PackageFileEntry previous) {
+        if (baselineZip == null || previous.isUnchanged()) {
+            return null;
+        }
+        ZipArchiveReader.Entry source = baselineZip.getEntry(previous.getDataEntry());
+        if (source == null || source.size() != previous.getSize() || source.crc() != previous.getCrc()) {
+            return null;
+        }
+        return source;
+    }
+
+    /**
+     * 基线中存在、但导出目录中已不存在的文件（只考虑本次导出的目录，图标和被排除的文件不删除）
+     */
+    private List<String> findDeletedFiles(ExportPlanner.Plan plan) {
+        Set<String> current = new HashSet<>();
+        for (ExportPlanner.Item item : plan.items()) {
+            current.add(item.entryName());
+        }
+
+        List<String> deleted = new ArrayList<>();
+        for (String path : baseline.keySet()) {
+            if (current.contains(path) || path.startsWith("icons/") || plan.isExcluded(path)) {
+                continue;
+            }
+            for (ExportPlanner.Root root : plan.roots()) {
+                if (path.startsWith(root.basePath())) {
+                    deleted.add(path);
+                    break;
+                }
+            }
+        }
+        Collections.sort(deleted);
+        return deleted;
+    }
+
+    /**
+     * 与基线中的记录比较文件是否变化
+     * 大小和修改时间都相同时直接认为未变化；大小相同而时间不同时比较SHA-256或CRC（结果保存在entry中，压缩时不再重复计算）
+     */
+    private boolean isUnchanged(CompressedEntry entry, PackageFileEntry previous) throws IOException {
+        File file = entry.item.file();
+        if (previous.getSize() != file.length()) {
+            return false;
+        }
+        if (previous.getMtime() != 0 && previous.getMtime() == entry.time) {
+            entry.size = previous.getSize();
+            entry.crc = previous.getCrc();
+            entry.sha256 = previous.getSha256();
+            return true;
+        }
+        checksumFile(file, entry, newSha256());
+        return previous.getSha256() != null
+                ? previous.getSha256().equals(entry.sha256)
+                : previous.getCrc() == entry.crc;
+    }
+
+    /**
+     * 划分压缩任务：固实模式下，同一目录中连续的小文件组成固实块，其余文件单独压缩
+     * 块的组成在写入文件之前确定，记录在清单中
+     */
+    private List<Unit> planUnits(ExportPlanner.Plan plan, PackageEntry packageEntry) throws IOException {
+        List<Unit> units = new ArrayList<>();
+        List<PackageSolidBlock> blocks = new ArrayList<>();
+        // 内容与其他文件相同的小文件不放入固实块，仍按内容去重
+        Set<String> duplicates = new HashSet<>(blobs.keySet());
+        duplicates.addAll(blobs.values());
+        Unit open = null;
+        for (ExportPlanner.Item item : plan.items()) {
+            long size = item.file().length();
+            if (!options.isSolid() || duplicates.contains(item.entryName()) || !fitsSolidBlock(item, size)) {
+                units.add(new Unit(item, null, null));
+                continue;
+            }
+            if (open != null && (open.block().getTotalSize() >= SOLID_BLOCK_SIZE
+                    || open.item().rootIndex() != item.rootIndex())) {
+                open = null;
+            }
+            if (open == null) {
+                open = new Unit(item, new PackageSolidBlock(SOLID_PREFIX + blocks.size()), new ArrayList<>());
+                blocks.add(open.block());
+                units.add(open);
+            }
+            open.members().add(item);
+            open.block().addFile(item.entryName(), size);
+        }
+        if (!blocks.isEmpty()) {
+            packageEntry.setSolidBlocks(blocks);
+        }
+        return units;
+    }
+
+    /**
+     * 去重规划：计算大小相同的文件的哈希，内容相同时由顺序在前的文件保存内容，其余文件引用它
+     * 在写入清单之前完成，引用关系记录在清单中（增量包中与基线相同的文件不写入，不参与去重）
+     */
+    private void planBlobs(List<ExportPlanner.Item> items) throws IOException {
+        List<ExportPlanner.Item> candidates = new ArrayList<>();
+        for (ExportPlanner.Item item : items) {
+            long size = item.file().length();
+            if (size > 0 && sizeCounts.getOrDefault(size, 0) > 1) {
+                candidates.add(item);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(options.effectiveThreads(), newThreadFactory());
+        try {
+            List<Future<FileHash>> futures = new ArrayList<>(candidates.size());
+            for (ExportPlanner.Item item : candidates) {
+                futures.add(pool.submit(() -> hash(item)));
+            }
+            Map<String, String> owners = new HashMap<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                String name = candidates.get(i).entryName();
+                FileHash hash = await(futures.get(i));
+                hashes.put(name, hash);
+                if (hash.unchanged() && options.isDelta()) {
+                    continue;
+                }
+                String owner = owners.putIfAbsent(hash.sha256(), name);
+                if (owner != null) {
+                    blobs.put(name, owner);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 计算文件的CRC和SHA-256，并与基线比较（大小和修改时间相同时直接使用基线中的记录）
+     */
+    private FileHash hash(ExportPlanner.Item item) throws IOException {
+        CompressedEntry entry = new CompressedEntry(item, item.file().lastModified());
+        PackageFileEntry previous = baseline != null ? baseline.get(item.entryName()) : null;
+        boolean unchanged = previous != null && item.rootIndex() >= 0 && isUnchanged(entry, previous);
+        if (entry.sha256 == null) {
+            checksumFile(item.file(), entry, newSha256());
+        }
+        return new FileHash(entry.size, entry.crc, entry.sha256, unchanged);
+    }
+
+    /**
+     * 文件是否放入固实块：只放应用目录中的小文件；可能与基线相同（可跳过或复制）的文件单独处理
+     */
+    private boolean fitsSolidBlock(ExportPlanner.Item item, long size) {
+        if (item.rootIndex() < 0 || size >= SOLID_FILE_LIMIT) {
+            return false;
+        }
+        PackageFileEntry previous = baseline != null ? baseline.get(item.entryName()) : null;
+        return previous == null || previous.getSize() != size;
+    }
+
+    /**
+     * 统计每种文件大小出现的次数，只有大小相同的文件才可能内容相同
+     */
+    private static Map<Long, Integer> countSizes(List<ExportPlanner.Item> items) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (ExportPlanner.Item item : items) {
+            counts.merge(item.file().length(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * 压缩并按顺序写入所有文件
+     * 并行模式下最多有 线程数*2 个条目处于压缩中或等待写入，以限制内存和临时文件占用
+     */
+    private void writeItems(ZipArchiveWriter writer, List<Unit> units, List<ExportPlanner.Root> roots)
+            throws IOException {
+        int threads = options.effectiveThreads();
+        int[] lastRootIndex = {-1};
+
+        Consumer<CompressedEntry> progress = entry -> {
+            if (entry.members != null) {
+                fileRecords.addAll(entry.members);
+            } else {
+                PackageFileEntry record = new PackageFileEntry(entry.item.entryName(), entry.size, entry.crc,
+                        entry.sha256);
+                record.setMtime(entry.time);
+                record.setBlob(entry.blob);
+                record.setUnchanged(entry.unchanged);
+                record.setPatch(entry.patchEntry);
+                fileRecords.add(record);
+            }
+
+            int rootIndex = entry.item.rootIndex();
+            if (rootIndex != lastRootIndex[0]) {
+                lastRootIndex[0] = rootIndex;
+                tracker.label(rootIndex >= 0 ? roots.get(rootIndex).label() : "icons");
+                report(rootIndex >= 0
+                        ? String.format("Exporting %d/%d: %s", rootIndex + 1, roots.size(), roots.get(rootIndex).label())
+                        : "Exporting icons...");
+            }
+            // 按固定频率报告进度，避免UI更新过频
+            if (tracker.advance(entry.members != null ? entry.members.size() : 1, entry.size)) {
+                report("  Added " + tracker.snapshot().filesDone() + " files...");
+            }
+        };
+
+        if (threads == 1) {
+            for (Unit unit : units) {
+                CompressedEntry entry = compress(unit);
+                try {
+                    writeEntry(writer, entry);
+                } finally {
+                    entry.discard();
+                }
+                progress.accept(entry);
+            }
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, newThreadFactory());
+        Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+        int window = threads * 2;
+
+        try {
+            for (Unit unit : units) {
+                if (pending.size() >= window) {
+                    writeCompleted(writer, pending.poll(), progress);
+                }
+                pending.add(pool.submit(() -> compress(unit)));
+            }
+            while (!pending.isEmpty()) {
+                writeCompleted(writer, pending.poll(), progress);
+            }
+        } finally {
+            pool.shutdownNow();
+            for (Future<CompressedEntry> future : pending) {
+                discard(future);
+            }
+        }
+    }
+
+    /**
+     * 等待条目压缩完成并写入ZIP
+     */
+    private void writeCompleted(ZipArchiveWriter writer, Future<CompressedEntry> future,
+                                Consumer<CompressedEntry> progress) throws IOException {
+        CompressedEntry entry = await(future);
+        try {
+            writeEntry(writer, entry);
+        } finally {
+            entry.discard();
+        }
+        progress.accept(entry);
+    }
+
+    /**
+     * 执行压缩任务
+     */
+    private CompressedEntry compress(Unit unit) throws IOException {
+        return unit.block() != null ? compressBlock(unit) : compress(unit.item());
+    }
+
+    /**
+     * 将固实块中的文件读入内存并拼接压缩，同时计算每个文件的CRC和SHA-256
+     * 文件大小必须与规划时（已写入清单）一致
+     */
+    private CompressedEntry compressBlock(Unit unit) throws IOException {
+        PackageSolidBlock block = unit.block();
+        CompressedEntry entry = new CompressedEntry(unit.item(), unit.item().file().lastModified());
+        entry.block = block;
+        entry.members = new ArrayList<>(unit.members().size());
+
+        byte[] data = new byte[(int) block.getTotalSize()];
+        int offset = 0;
+        for (int i = 0; i < unit.members().size(); i++) {
+            ExportPlanner.Item item = unit.members().get(i);
+            long expected = block.getFiles().get(i).getSize();
+            long time = item.file().lastModified();
+            byte[] content = Files.readAllBytes(item.file().toPath());
+            if (content.length != expected) {
+                throw new IOException("File changed during export: " + item.file());
+            }
+            System.arraycopy(content, 0, data, offset, content.length);
+            offset += content.length;
+
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            PackageFileEntry record = new PackageFileEntry(item.entryName(), content.length, crc.getValue(),
+                    HexFormat.of().formatHex(newSha256().digest(content)));
+            record.setMtime(time);
+            entry.members.add(record);
+        }
+
+        deflate(Channels.newChannel(new ByteArrayInputStream(data)), data.length, entry, null);
+        return entry;
+    }
+
+    /**
+     * 压缩单个文件
+     * 增量模式下，与基线相同的文件不压缩；
+     * 去重模式下，规划时已计算大小相同的文件的哈希：内容由其他条目保存时直接引用，不再压缩
+     */
+    private CompressedEntry compress(ExportPlanner.Item item) throws IOException {
+        File file = item.file();
+        CompressedEntry entry = new CompressedEntry(item, file.lastModified());
+
+        // 图标放在公共的图标目录中且很小，总是包含在增量包里
+        PackageFileEntry previous = baseline != null ? baseline.get(item.entryName()) : null;
+        FileHash hash = hashes.get(item.entryName());
+        boolean unchanged;
+        if (hash != null) {
+            entry.size = hash.size();
+            entry.crc = hash.crc();
+            entry.sha256 = hash.sha256();
+            unchanged = hash.unchanged();
+        } else {
+            unchanged = previous != null && item.rootIndex() >= 0 && isUnchanged(entry, previous);
+        }
+        if (unchanged) {
+            if (options.isDelta()) {
+                entry.unchanged = true;
+                return entry;
+            }
+            ZipArchiveReader.Entry source = reusableEntry(previous);
+            if (source != null) {
+                entry.blob = blobs.get(item.entryName());
+                if (entry.blob == null) {
+                    entry.reused = source;
+                }
+                return entry;
+            }
+        }
+
+        // 内容可能被其他文件引用的文件不生成补丁
+        boolean uniqueSize = !options.isDeduplicate() || sizeCounts.getOrDefault(file.length(), 0) <= 1;
+        if (previous != null && options.isDelta() && options.isBinaryPatch() && item.rootIndex() >= 0
+                && uniqueSize && file.length() >= PATCH_MIN_SIZE && createPatch(entry, previous)) {
+            return entry;
+        }
+
+        MessageDigest digest = entry.sha256 == null ? newSha256() : null;
+        if (hash != null) {
+            entry.blob = blobs.get(item.entryName());
+            if (entry.blob != null) {
+                return entry;
+            }
+        }
+
+        if (compressionPolicy.chooseMethod(file) == ZipEntry.STORED) {
+            return store(entry, digest);
+        }
+
+        deflate(file, entry, digest);
+        return entry;
+    }
+
+    /**
+     * 根据基线包中的旧版本为文件生成块级补丁
+     * @return 是否生成了补丁（基线包中没有旧版本的内容，或相同的块太少时不生成）
+     */
+    private boolean createPatch(CompressedEntry entry, PackageFileEntry previous) throws IOException {
+        ZipArchiveReader.Entry source = reusableEntry(previous);
+        if (source == null) {
+            return false;
+        }
+
+        Path patchFile = Files.createTempFile("pam-patch-", ".tmp");
+        try {
+            BlockPatch.Result result;
+            try (InputStream oldData = baselineZip.getInputStream(source);
+                 OutputStream out = Files.newOutputStream(patchFile)) {
+                result = BlockPatch.create(oldData, source.size(), entry.item.file(), out);
+            }
+            // 一半以上的数据都需要保存时，补丁没有意义
+            if (result.literalBytes() > result.size() / 2) {
+                return false;
+            }
+
+            CompressedEntry patchData = new CompressedEntry(entry.item, entry.time);
+            deflate(patchFile.toFile(), patchData, null);
+            entry.size = result.size();
+            entry.crc = result.crc();
+            entry.sha256 = HexFormat.of().formatHex(result.sha256());
+            entry.patchEntry = PATCH_PREFIX + entry.item.entryName();
+            entry.patchCrc = patchData.crc;
+            entry.patchSize = patchData.size;
+            entry.compressedSize = patchData.compressedSize;
+            entry.data = patchData.data;
+            entry.spillFile = patchData.spillFile;
+            return true;
+        } finally {
+            Files.deleteIfExists(patchFile);
+        }
+    }
+
+    /**
+     * 压缩文件到内存（小文件）或临时文件，同时计算CRC和SHA-256（digest不为null时）
+     */
+    private void deflate(File file, CompressedEntry entry, MessageDigest digest) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            deflate(in, file.length(), entry, digest);
+        }
+    }
+
+    /**
+     * 压缩通道中的数据
+     * @param length 数据长度（决定压缩到内存还是临时文件）
+     */
+    private void deflate(ReadableByteChannel in, long length, CompressedEntry entry, MessageDigest digest)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        entry.size = 0;
+        Deflater deflater = ZipCodecPool.acquireDeflater(compressionPolicy.level());
+        ByteBuffer input = ZipCodecPool.acquireBuffer();
+        ByteBuffer output = ZipCodecPool.acquireBuffer();
+        FileChannel spill = null;
+
+        try {
+            if (length <= IN_MEMORY_LIMIT) {
+                entry.data = ByteBuffer.allocate(deflateBound(length));
+            } else {
+                entry.spillFile = Files.createTempFile("pam-export-", ".tmp");
+                spill = FileChannel.open(entry.spillFile, StandardOpenOption.WRITE);
+            }
+
+            while (in.read(input) != -1) {
+                input.flip();
+                crc.update(input.duplicate());
+                if (digest != null) {
+                    digest.update(input.duplicate());
+                }
+                entry.size += input.remaining();
+                deflater.setInput(input);
+                while (!deflater.needsInput()) {
+                    drain(deflater, output, entry, spill);
+                }
+                input.clear();
+            }
+            // Deflater仍持有输入缓冲区的引用，将其置空以免finish时重复压缩旧数据
+            input.flip();
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(deflater, output, entry, spill);
+            }
+
+            entry.compressedSize = deflater.getBytesWritten();
+            entry.crc = crc.getValue();
+            if (digest != null) {
+                entry.sha256 = HexFormat.of().formatHex(digest.digest());
+            }
+            if (entry.data != null) {
+                entry.data.flip();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Export cancelled");
+            }
+        } catch (IOException | RuntimeException e) {
+            entry.discard();
+            throw e;
+        } finally {
+            if (spill != null) {
+                spill.close();
+            }
+            ZipCodecPool.releaseBuffer(input);
+            ZipCodecPool.releaseBuffer(output);
+            ZipCodecPool.releaseDeflater(deflater);
+        }
+    }
+
+    /**
+     * 取出Deflater的输出，追加到内存缓冲区（空间不足时扩容）或临时文件
+     */
+    private static void drain(Deflater deflater, ByteBuffer output, CompressedEntry entry, FileChannel spill)
+            throws IOException {
+        output.clear();
+        deflater.deflate(output);
+        output.flip();
+        if (spill != null) {
+            while (output.hasRemaining()) {
+                spill.write(output);
+            }
+            return;
+        }
+        if (entry.data.remaining() < output.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(entry.data.capacity() * 2,
+                    entry.data.position() + output.remaining()));
+            grown.put(entry.data.flip());
+            entry.data = grown;
+        }
+        entry.data.put(output);
+    }
+
+    /**
+     * 估算压缩后的最大长度（与zlib的deflateBound一致），内存中的条目通常无需扩容
+     */
+    private static int deflateBound(long size) {
+        return (int) (size + (size >> 12) + (size >> 14) + (size >> 25) + 64);
+    }
+
+    /**
+     * 以存储方式（不压缩）准备条目：预先计算CRC，小文件读入内存，大文件在写入时从源文件复制
+     * @param digest 需要同时计算的SHA-256，已经计算过时为null
+     */
+    private CompressedEntry store(CompressedEntry entry, MessageDigest digest) throws IOException {
+        File file = entry.item.file();
+        entry.method = ZipEntry.STORED;
+
+        if (file.length() <= IN_MEMORY_LIMIT) {
+            byte[] data = Files.readAllBytes(file.toPath());
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.crc = crc.getValue();
+            if (digest != null) {
+                entry.sha256 = HexFormat.of().formatHex(digest.digest(data));
+            }
+            entry.data = ByteBuffer.wrap(data);
+            entry.size = data.length;
+        } else if (entry.sha256 == null) {
+            checksumFile(file, entry, digest);
+        }
+
+        entry.compressedSize = entry.size;
+        return entry;
+    }
+
+    /**
+     * 计算文件的CRC，以及SHA-256（digest不为null时，用于去重判断）
+     */
+    private static void checksumFile(File file, CompressedEntry entry, MessageDigest digest) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        ByteBuffer buffer = ZipCodecPool.acquireBuffer();
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                crc.update(buffer.duplicate());
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+                size += buffer.remaining();
+                buffer.clear();
+            }
+        } finally {
+            ZipCodecPool.releaseBuffer(buffer);
+        }
+
+        entry.crc = crc.getValue();
+        entry.size = size;
+        if (digest != null) {
+            entry.sha256 = HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 报告相对基线的变化
+     * @param deletedFiles 增量包中删除的文件，非增量模式为null
+     */
+    private void reportBaseline(List<String> deletedFiles) {
+        int unchanged = 0;
+        for (PackageFileEntry record : fileRecords) {
+            if (record.isUnchanged()) {
+                unchanged++;
+            }
+        }
+        if (deletedFiles != null) {
+            report(String.format("  Delta: %d changed (%d patched), %d unchanged, %d deleted",
+                    fileRecords.size() - unchanged, patchedCount, unchanged, deletedFiles.size()));
+        } else {
+            report(String.format("  Reused %d unchanged files from baseline", reusedCount));
+        }
+    }
+
+    /**
+     * 报告去重节省的空间
+     */
+    private void reportDeduplication() {
+        int duplicates = 0;
+        long savedBytes = 0;
+        for (PackageFileEntry record : fileRecords) {
+            if (record.getBlob() != null) {
+                duplicates++;
+                savedBytes += record.getSize();
+            }
+        }
+        if (duplicates > 0) {
+            report(String.format("  Deduplicated %d files (%.1f MB)", duplicates, savedBytes / 1048576.0));
+        }
+    }
+
+    /**
+     * 将压缩好的条目写入ZIP（内容与其他条目相同的文件不写入）
+     */
+    private void writeEntry(ZipArchiveWriter writer, CompressedEntry entry) throws IOException {
+        if (entry.blob != null || entry.unchanged) {
+            return;
+        }
+        if (entry.reused != null) {
+            // 未变化的文件：原样复制基线包中的压缩数据
+            writer.copyEntry(baselineZip, entry.reused, entry.item.entryName(), entry.time);
+            reusedCount++;
+            return;
+        }
+
+        if (entry.patchEntry != null) {
+            writer.putEntry(entry.patchEntry, ZipEntry.DEFLATED, entry.time,
+                    entry.patchCrc, entry.compressedSize, entry.patchSize);
+            patchedCount++;
+        } else if (entry.block != null) {
+            writer.putEntry(entry.block.getEntry(), ZipEntry.DEFLATED, entry.time,
+                    entry.crc, entry.compressedSize, entry.size);
+        } else {
+            writer.putEntry(entry.item.entryName(), entry.method, entry.time,
+                    entry.crc, entry.compressedSize, entry.size);
+        }
+
+        if (entry.data != null) {
+            writer.write(entry.data.duplicate());
+            return;
+        }
+
+        // 临时文件中的压缩数据，或较大的存储条目的源文件，直接传输到输出通道
+        Path source = entry.spillFile != null ? entry.spillFile : entry.item.file().toPath();
+        try (FileChannel in = FileChannel.open(source)) {
+            if (in.size() < entry.compressedSize) {
+                throw new IOException("File changed during export: " + entry.item.file());
+            }
+            writer.transferFrom(in, 0, entry.compressedSize);
+        }
+    }
+
+    /**
+     * 压缩内存中的数据并写入ZIP
+     */
+    static void writeBytes(ZipArchiveWriter writer, String entryName, byte[] bytes) throws IOException {
+        Deflater deflater = ZipCodecPool.acquireDeflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            ByteBuffer compressed = ByteBuffer.allocate(deflateBound(bytes.length));
+            deflater.setInput(bytes);
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflater.deflate(compressed);
+            }
+            compressed.flip();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            writer.putEntry(entryName, ZipEntry.DEFLATED, System.currentTimeMillis(),
+                    crc.getValue(), compressed.remaining(), bytes.length);
+            writer.write(compressed);
+        } finally {
+            ZipCodecPool.releaseDeflater(deflater);
+        }
+    }
+
+    /**
+     * 等待后台任务完成，并还原其中的异常
+     */
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 丢弃未写入的条目（取消任务并清理临时文件）
+     */
+    private static void discard(Future<CompressedEntry> future) {
+        future.cancel(true);
+        if (future.isDone() && !future.isCancelled()) {
+            try {
+                future.get().discard();
+            } catch (Exception ignored) {
+                // 任务已失败，无需清理
+            }
+        }
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "package-export-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void report(String message) {
+        if (progressCallback != null) {
+            progressCallback.accept(message);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cn.yenmor.portableappmanager;
+
+/**
+ * 软件包中单个文件的记录
+ * 保存文件的大小、修改时间、CRC和内容哈希；内容与其他文件相同时，
+ * blob指向实际保存该内容的ZIP条目；增量包中未变化的文件没有数据，unchanged为true；
+ * 以补丁形式保存的文件，patch指向补丁条目
+ */
+public class PackageFileEntry {
+    private String path;
+    private long size;
+    private long mtime;
+    private long crc;
+    private String sha256;
+    private String blob;
+    private Boolean unchanged;
+    private String patch;
+
+    public PackageFileEntry() {
+    }
+
+    public PackageFileEntry(String path, long size, long crc, String sha256) {
+        this.path = path;
+        this.size = size;
+        this.crc = crc;
+        this.sha256 = sha256;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getMtime() {
+        return mtime;
+    }
+
+    public void setMtime(long mtime) {
+        this.mtime = mtime;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public void setCrc(long crc) {
+        this.crc = crc;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getBlob() {
+        return blob;
+    }
+
+    public void setBlob(String blob) {
+        this.blob = blob;
+    }
+
+    /**
+     * 是否与基线包中的文件相同（增量包中不包含其数据）
+     */
+    public boolean isUnchanged() {
+        return Boolean.TRUE.equals(unchanged);
+    }
+
+    public void setUnchanged(boolean unchanged) {
+        // 只记录为true的情况，保持index.json紧凑
+        this.unchanged = unchanged ? Boolean.TRUE : null;
+    }
+
+    /**
+     * 增量包中保存块级补丁的条目，补丁需要应用到已安装的旧版本上；没有补丁时为null
+     */
+    public String getPatch() {
+        return patch;
+    }
+
+    public void setPatch(String patch) {
+        this.patch = patch;
+    }
+
+    /**
+     * 实际保存文件内容的ZIP条目
+     */
+    public String getDataEntry() {
+        return blob != null ? blob : path;
+    }
+}
@@ -0,0 +1,784 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 软件包解压引擎
+ * 利用中央目录中各条目相互独立的偏移量，在有限数量的工作线程中并行解压，
+ * 并缓存已创建的目录，避免对每个文件都调用mkdirs。
+ * 条目数据直接写入目标文件通道（存储条目使用transferTo，不经过Java堆）。
+ * 可选跳过与条目大小和CRC相同的已有文件，只写入真正变化的文件。
+ * 写入时按校验模式在解压线程中一并计算CRC或SHA-256，与包中的记录比较。
+ * 固实块中需要的文件合并为一个任务，块只解压一次，不需要的数据直接跳过。
+ * 也可以从ZIP流中依次解压（不需要中央目录）
+ */
+class PackageImporter {
+    private static final Logger logger = Logger.getLogger(PackageImporter.class.getName());
+
+    private final ImportOptions options;
+    private final Consumer<String> progressCallback;
+    private final ProgressTracker tracker;
+    private final Map<File, Boolean> createdDirs = new ConcurrentHashMap<>();
+    private final AtomicInteger filesDone = new AtomicInteger();
+    private final AtomicInteger filesSkipped = new AtomicInteger();
+    private final AtomicInteger filesVerified = new AtomicInteger();
+    private final AtomicLong bytesDone = new AtomicLong();
+    private long startTime;
+    private int totalFiles;
+
+    /**
+     * 解压任务：将ZIP条目的内容写入目标路径（去重的文件从保存其内容的条目解压）
+     * @param zip 条目所在的包（合并时同一批任务可来自多个包）
+     * @param file 目标文件在index.json中的记录（旧版本的包没有索引时为null）
+     * @param offset 文件在固实块中的偏移量，不在固实块中时为-1
+     */
+    record ExtractItem(ZipArchiveReader zip, ZipArchiveReader.Entry entry, String targetName,
+                       PackageFileEntry file, long offset) {
+
+        ExtractItem(ZipArchiveReader zip, ZipArchiveReader.Entry entry, String targetName) {
+            this(zip, entry, targetName, null, -1);
+        }
+
+        ExtractItem(ZipArchiveReader zip, ZipArchiveReader.Entry entry, String targetName, PackageFileEntry file) {
+            this(zip, entry, targetName, file, -1);
+        }
+
+        /**
+         * 条目是否为应用到已安装文件上的块级补丁
+         */
+        boolean isPatch() {
+            return file != null && file.getPatch() != null;
+        }
+
+        /**
+         * 文件是否保存在固实块中
+         */
+        boolean isSolid() {
+            return offset >= 0;
+        }
+
+        /**
+         * 解压后的文件大小
+         */
+        long size() {
+            return isPatch() || isSolid() ? file.getSize() : entry.size();
+        }
+    }
+
+    /**
+     * 写入目标文件的同时计算校验值的通道
+     */
+    private static final class VerifyingChannel implements WritableByteChannel {
+        private final WritableByteChannel target;
+        private final CRC32 crc = new CRC32();
+        private final MessageDigest digest;
+
+        private VerifyingChannel(WritableByteChannel target, boolean fullHash) {
+            this.target = target;
+            this.digest = fullHash ? newSha256() : null;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            ByteBuffer written = src.duplicate();
+            int count = target.write(src);
+            written.limit(written.position() + count);
+            if (digest != null) {
+                digest.update(written.duplicate());
+            }
+            crc.update(written);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return target.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+
+    PackageImporter(ImportOptions options, Consumer<String> progressCallback) {
+        this.options = options != null ? options : new ImportOptions();
+        this.progressCallback = progressCallback;
+        this.tracker = new ProgressTracker(this.options.getProgressListener());
+    }
+
+    /**
+     * 解压条目到目标位置
+     * @param items 解压任务
+     * @param targetBasePath 目标基础路径
+     */
+    void extract(List<ExtractItem> items, String targetBasePath) throws IOException {
+        startTime = System.nanoTime();
+        totalFiles = items.size();
+        long totalBytes = 0;
+        for (ExtractItem item : items) {
+            totalBytes += item.size();
+        }
+        tracker.start(ProgressEvent.Phase.EXTRACTING, totalFiles, totalBytes);
+
+        List<List<ExtractItem>> tasks = groupTasks(items);
+        int threads = Math.min(options.effectiveThreads(), tasks.size());
+        if (threads <= 1) {
+            for (List<ExtractItem> task : tasks) {
+                extractTask(task, targetBasePath);
+            }
+        } else {
+            extractParallel(tasks, targetBasePath, threads);
+        }
+
+        reportSummary();
+    }
+
+    /**
+     * 从ZIP流中依次解压条目（流不能定位，只能单线程按顺序写入）
+     * 内容去重的文件在读到包末尾的index.json之后，从已解压的相同内容复制；
+     * 只导入部分应用时，按清单中的去重记录只把被选中的文件引用的其余条目暂存到临时目录，
+     * 清单中没有去重记录（旧版本的包）而选中的文件引用了未解压的内容时导入失败。
+     * 固实块按清单中记录的组成在读取时直接切分，修改时间在读到index.json后设置
+     * @param zin 已读取manifest.json的ZIP流
+     * @param wantedEntries 需要的条目名称，为null时解压全部
+     * @param solidBlocks 清单中记录的固实块，普通包为null
+     * @param blobs 清单中记录的去重文件 -> 保存内容的条目，没有记录时为null
+     * @param totalBytes 需要解压的总字节数（用于报告进度），未知时为0
+     * @param targetBasePath 目标基础路径
+     * @return 包末尾的文件索引（旧版本的包没有索引时为null）
+     */
+    PackageIndex extractStream(ZipInputStream zin, Set<String> wantedEntries, List<PackageSolidBlock> solidBlocks,
+                               Map<String, String> blobs, long totalBytes, String targetBasePath)
+            throws IOException {
+        startTime = System.nanoTime();
+        totalFiles = wantedEntries != null ? wantedEntries.size() : 0;
+        tracker.start(ProgressEvent.Phase.EXTRACTING, totalFiles, totalBytes);
+
+        PackageIndex index = null;
+        // 条目名称 -> 保存其内容的文件
+        Map<String, File> contents = new HashMap<>();
+        // 完整校验时记录写入内容的SHA-256，读到index.json后比较（CRC由ZipInputStream在读完条目时校验）
+        Map<String, String> hashes = new HashMap<>();
+        boolean fullHash = options.getVerifyMode() == VerifyMode.FULL;
+        Map<String, PackageSolidBlock> blocks = new HashMap<>();
+        if (solidBlocks != null) {
+            for (PackageSolidBlock block : solidBlocks) {
+                blocks.put(block.getEntry(), block);
+            }
+        }
+        // 从固实块中写出的文件
+        Map<String, File> slices = new HashMap<>();
+        // 未选中、但内容被选中的文件引用的条目
+        Set<String> spooled = new HashSet<>();
+        if (wantedEntries != null && blobs != null) {
+            for (Map.Entry<String, String> blob : blobs.entrySet()) {
+                if (wantedEntries.contains(blob.getKey()) && !wantedEntries.contains(blob.getValue())) {
+                    spooled.add(blob.getValue());
+                }
+            }
+        }
+        Path spoolDir = null;
+        try {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.equals(PackageIndex.ENTRY_NAME)) {
+                    index = PackageIndex.fromJson(new String(zin.readAllBytes(), StandardCharsets.UTF_8));
+                    continue;
+                }
+                if (name.equals("manifest.json")) {
+                    continue;
+                }
+                if (name.contains("..")) {
+                    logger.warning("Skipping potentially malicious entry: " + name);
+                    continue;
+                }
+                PackageSolidBlock block = blocks.get(name);
+                if (block != null) {
+                    extractStreamBlock(zin, block, wantedEntries, hashes, slices, targetBasePath);
+                    continue;
+                }
+
+                if (wantedEntries != null && !wantedEntries.contains(name)) {
+                    if (spooled.contains(name) && !entry.isDirectory()) {
+                        if (spoolDir == null) {
+                            spoolDir = Files.createTempDirectory("pam-stream-");
+                        }
+                        File spoolFile = spoolDir.resolve(Integer.toString(contents.size())).toFile();
+                        Files.copy(zin, spoolFile.toPath());
+                        contents.put(name, spoolFile);
+                    }
+                    continue;
+                }
+
+                File targetFile = resolveTarget(name, targetBasePath);
+                if (entry.isDirectory()) {
+                    ensureDirectory(targetFile);
+                    tracker.advance(1, 0);
+                    continue;
+                }
+                File parentDir = targetFile.getParentFile();
+                if (parentDir != null) {
+                    ensureDirectory(parentDir);
+                }
+
+                // 本地文件头中记录了大小和CRC时，可以在读取数据之前判断文件是否变化
+                long size = Math.max(entry.getSize(), 0);
+                if (options.isSkipUnchanged() && entry.getSize() >= 0 && entry.getCrc() >= 0
+                        && isUnchanged(entry.getSize(), entry.getCrc(), null, entry.getTime(), targetFile)) {
+                    filesSkipped.incrementAndGet();
+                } else {
+                    MessageDigest digest = fullHash ? newSha256() : null;
+                    try (OutputStream out = Files.newOutputStream(targetFile.toPath())) {
+                        size = zin.transferTo(digest != null ? new DigestOutputStream(out, digest) : out);
+                    }
+                    if (digest != null) {
+                        hashes.put(name, HexFormat.of().formatHex(digest.digest()));
+                    }
+                    if (options.getVerifyMode() != VerifyMode.NONE) {
+                        filesVerified.incrementAndGet();
+                    }
+                    bytesDone.addAndGet(size);
+                    if (entry.getTime() > 0) {
+                        targetFile.setLastModified(entry.getTime());
+                    }
+                }
+                contents.put(name, targetFile);
+                fileDone(size);
+            }
+
+            if (index != null) {
+                for (PackageFileEntry file : index.getFiles()) {
+                    String actual = hashes.get(file.getPath());
+                    if (actual != null && file.getSha256() != null) {
+                        verifyHash(file.getPath(), file.getSha256(), actual);
+                    }
+                    File slice = slices.get(file.getPath());
+                    if (slice != null && file.getMtime() > 0) {
+                        slice.setLastModified(file.getMtime());
+                    }
+                }
+                copyBlobs(index, contents, wantedEntries, blobs != null, targetBasePath);
+            }
+        } finally {
+            if (spoolDir != null) {
+                deleteTree(spoolDir);
+            }
+        }
+
+        reportSummary();
+        return index;
+    }
+
+    /**
+     * 报告导入完成（删除文件和保存配置之后调用）
+     */
+    void finish() {
+        tracker.enter(ProgressEvent.Phase.DONE);
+    }
+
+    /**
+     * 删除增量包中记录的已删除文件（文件不存在时忽略）
+     * @param paths 文件在包中的路径
+     * @param targetBasePath 目标基础路径
+     */
+    void delete(List<String> paths, String targetBasePath) throws IOException {
+        int deleted = 0;
+        for (String path : paths) {
+            if (Files.deleteIfExists(resolveTarget(path, targetBasePath).toPath())) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            report(String.format("Removed %d deleted files", deleted));
+        }
+    }
+
+    /**
+     * 计算条目对应的目标文件
+     */
+    static File resolveTarget(String entryName, String targetBasePath) {
+        if (entryName.startsWith("icons/")) {
+            // 图标文件统一放到图标目录
+            return new File(ConstVars.ICONS_DIR + new File(entryName).getName());
+        }
+        // 应用文件解压到项目根目录，保持原有目录结构
+        return new File(targetBasePath, entryName);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 将解压任务分组：同一固实块中的文件合为一组（按偏移量排序），其余条目各自一组
+     */
+    private static List<List<ExtractItem>> groupTasks(List<ExtractItem> items) {
+        List<List<ExtractItem>> tasks = new ArrayList<>(items.size());
+        // 合并时可能来自多个包，按条目对象区分
+        Map<ZipArchiveReader.Entry, List<ExtractItem>> blocks = new IdentityHashMap<>();
+        for (ExtractItem item : items) {
+            if (!item.isSolid()) {
+                tasks.add(List.of(item));
+                continue;
+            }
+            List<ExtractItem> block = blocks.get(item.entry());
+            if (block == null) {
+                block = new ArrayList<>();
+                blocks.put(item.entry(), block);
+                tasks.add(block);
+            }
+            block.add(item);
+        }
+        for (List<ExtractItem> block : blocks.values()) {
+            block.sort(Comparator.comparingLong(ExtractItem::offset));
+        }
+        return tasks;
+    }
+
+    /**
+     * 多个工作线程依次领取下一个任务进行解压，任一线程失败后其余线程停止领取
+     */
+    private void extractParallel(List<List<ExtractItem>> tasks, String targetBasePath, int threads)
+            throws IOException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, newThreadFactory());
+
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = pool.submit(() -> {
+                    int index;
+                    while (failure.get() == null && (index = next.getAndIncrement()) < tasks.size()) {
+                        try {
+                            extractTask(tasks.get(index), targetBasePath);
+                        } catch (IOException | RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                });
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, new IOException(e.getCause()));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Exception error = failure.get();
+        if (error instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (error instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+    }
+
+    /**
+     * 执行解压任务
+     */
+    private void extractTask(List<ExtractItem> task, String targetBasePath) throws IOException {
+        if (task.get(0).isSolid()) {
+            extractBlock(task, targetBasePath);
+        } else {
+            extractEntry(task.get(0), targetBasePath);
+        }
+    }
+
+    /**
+     * 解压固实块中需要的文件：按顺序解压一次块数据，依次写出各文件，其余数据跳过
+     * @param items 同一块中的文件，按偏移量排序
+     */
+    private void extractBlock(List<ExtractItem> items, String targetBasePath) throws IOException {
+        ExtractItem first = items.get(0);
+        VerifyMode verifyMode = options.getVerifyMode();
+        byte[] buffer = new byte[ZipCodecPool.BUFFER_SIZE];
+        long position = 0;
+        try (InputStream in = first.zip().getInputStream(first.entry())) {
+            for (ExtractItem item : items) {
+                PackageFileEntry file = item.file();
+                in.skipNBytes(item.offset() - position);
+                position = item.offset() + file.getSize();
+
+                File targetFile = prepareTarget(item.targetName(), targetBasePath);
+                if (options.isSkipUnchanged() && isUnchanged(file.getSize(), file.getCrc(), file.getSha256(), file.getMtime(), targetFile)) {
+                    in.skipNBytes(file.getSize());
+                    filesSkipped.incrementAndGet();
+                    fileDone(file.getSize());
+                    continue;
+                }
+
+                CRC32 crc = verifyMode != VerifyMode.NONE ? new CRC32() : null;
+                MessageDigest digest = verifyMode == VerifyMode.FULL && file.getSha256() != null ? newSha256() : null;
+                copySlice(in, file.getSize(), targetFile, crc, digest, buffer);
+                if (crc != null) {
+                    if (crc.getValue() != file.getCrc()) {
+                        throw new IOException("Verification failed, CRC mismatch: " + item.targetName());
+                    }
+                    filesVerified.incrementAndGet();
+                }
+                if (digest != null) {
+                    verifyHash(item.targetName(), file.getSha256(), HexFormat.of().formatHex(digest.digest()));
+                }
+                if (file.getMtime() > 0) {
+                    targetFile.setLastModified(file.getMtime());
+                }
+                bytesDone.addAndGet(file.getSize());
+                fileDone(file.getSize());
+            }
+        }
+    }
+
+    /**
+     * 从流中读取到的固实块：写出需要的文件，其余数据跳过
+     * （块的CRC由ZipInputStream在读完条目时校验，完整校验时记录各文件的SHA-256）
+     */
+    private void extractStreamBlock(ZipInputStream zin, PackageSolidBlock block, Set<String> wantedEntries,
+                                    Map<String, String> hashes, Map<String, File> slices, String targetBasePath)
+            throws IOException {
+        byte[] buffer = new byte[ZipCodecPool.BUFFER_SIZE];
+        boolean fullHash = options.getVerifyMode() == VerifyMode.FULL;
+        for (PackageSolidBlock.Member member : block.getFiles()) {
+            String path = member.getPath();
+            if ((wantedEntries != null && !wantedEntries.contains(path)) || path.contains("..")) {
+                zin.skipNBytes(member.getSize());
+                continue;
+            }
+            File targetFile = prepareTarget(path, targetBasePath);
+            MessageDigest digest = fullHash ? newSha256() : null;
+            copySlice(zin, member.getSize(), targetFile, null, digest, buffer);
+            if (digest != null) {
+                hashes.put(path, HexFormat.of().formatHex(digest.digest()));
+            }
+            if (options.getVerifyMode() != VerifyMode.NONE) {
+                filesVerified.incrementAndGet();
+            }
+            slices.put(path, targetFile);
+            bytesDone.addAndGet(member.getSize());
+            fileDone(member.getSize());
+        }
+    }
+
+    /**
+     * 从块数据流中复制指定长度的数据到目标文件，同时更新校验值（不需要时为null）
+     */
+    private static void copySlice(InputStream in, long size, File targetFile, CRC32 crc, MessageDigest digest,
+                                  byte[] buffer) throws IOException {
+        try (OutputStream out = Files.newOutputStream(targetFile.toPath())) {
+            long remaining = size;
+            while (remaining > 0) {
+                int count = in.readNBytes(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count == 0) {
+                    throw new EOFException("Invalid package: solid block is truncated at " + targetFile.getName());
+                }
+                out.write(buffer, 0, count);
+                if (crc != null) {
+                    crc.update(buffer, 0, count);
+                }
+                if (digest != null) {
+                    digest.update(buffer, 0, count);
+                }
+                remaining -= count;
+            }
+        }
+    }
+
+    /**
+     * 计算目标文件并确保其父目录存在
+     */
+    private File prepareTarget(String entryName, String targetBasePath) throws IOException {
+        File targetFile = resolveTarget(entryName, targetBasePath);
+        File parentDir = targetFile.getParentFile();
+        if (parentDir != null) {
+            ensureDirectory(parentDir);
+        }
+        return targetFile;
+    }
+
+    /**
+     * 解压单个条目
+     */
+    private void extractEntry(ExtractItem item, String targetBasePath) throws IOException {
+        ZipArchiveReader.Entry entry = item.entry();
+        File targetFile = resolveTarget(item.targetName(), targetBasePath);
+        if (entry.isDirectory()) {
+            ensureDirectory(targetFile);
+            tracker.advance(1, 0);
+            return;
+        }
+
+        // 确保父目录存在
+        File parentDir = targetFile.getParentFile();
+        if (parentDir != null) {
+            ensureDirectory(parentDir);
+        }
+
+        PackageFileEntry file = item.file();
+        long size = item.isPatch() ? file.getSize() : entry.size();
+        long crc = item.isPatch() ? file.getCrc() : entry.crc();
+        // 去重的文件从其他条目解压，修改时间以索引中的记录为准
+        long time = file != null && file.getMtime() > 0 ? file.getMtime() : entry.time();
+        VerifyMode verifyMode = options.getVerifyMode();
+        String expectedHash = file != null && verifyMode == VerifyMode.FULL ? file.getSha256() : null;
+        if (options.isSkipUnchanged() && isUnchanged(size, crc, file != null ? file.getSha256() : null, time, targetFile)) {
+            filesSkipped.incrementAndGet();
+        } else {
+            long written;
+            if (item.isPatch()) {
+                // 在已安装的旧版本上应用补丁（补丁应用时总是校验CRC）
+                try (InputStream patch = item.zip().getInputStream(entry)) {
+                    written = BlockPatch.apply(patch, targetFile);
+                }
+                if (expectedHash != null) {
+                    verifyHash(item.targetName(), expectedHash, sha256Of(targetFile));
+                }
+            } else {
+                try (FileChannel out = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    if (verifyMode == VerifyMode.NONE) {
+                        written = item.zip().copyTo(entry, out);
+                    } else {
+                        VerifyingChannel verifier = new VerifyingChannel(out, expectedHash != null);
+                        written = item.zip().copyTo(entry, verifier);
+                        if (verifier.crc.getValue() != crc) {
+                            throw new IOException("Verification failed, CRC mismatch: " + item.targetName());
+                        }
+                        if (expectedHash != null) {
+                            verifyHash(item.targetName(), expectedHash, HexFormat.of().formatHex(verifier.digest.digest()));
+                        }
+                    }
+                }
+            }
+            if (verifyMode != VerifyMode.NONE) {
+                filesVerified.incrementAndGet();
+            }
+            // 保留包中记录的修改时间，下次导入时可以据此快速判断文件是否变化
+            if (time > 0) {
+                targetFile.setLastModified(time);
+            }
+            bytesDone.addAndGet(written);
+        }
+
+        fileDone(size);
+    }
+
+    /**
+     * 从流中解压完毕后，为内容去重的文件复制已解压的相同内容
+     * @param contents 条目名称 -> 保存其内容的文件
+     * @param blobsListed 清单中是否有去重记录（没有时只导入部分应用无法暂存被引用的内容）
+     */
+    private void copyBlobs(PackageIndex index, Map<String, File> contents, Set<String> wantedEntries,
+                           boolean blobsListed, String targetBasePath) throws IOException {
+        for (PackageFileEntry file : index.getFiles()) {
+            String path = file.getPath();
+            if (file.getBlob() == null || (wantedEntries != null && !wantedEntries.contains(path))) {
+                continue;
+            }
+            if (path.contains("..")) {
+                logger.warning("Skipping potentially malicious entry: " + path);
+                continue;
+            }
+            File source = contents.get(file.getBlob());
+            if (source == null) {
+                if (wantedEntries != null && !blobsListed) {
+                    throw new IOException("Package manifest does not list deduplicated content, "
+                            + "selected apps cannot be imported from a stream: " + path);
+                }
+                throw new IOException("Invalid package: missing content for " + path);
+            }
+
+            File targetFile = resolveTarget(path, targetBasePath);
+            File parentDir = targetFile.getParentFile();
+            if (parentDir != null) {
+                ensureDirectory(parentDir);
+            }
+            if (options.isSkipUnchanged() && isUnchanged(file.getSize(), file.getCrc(), file.getSha256(), file.getMtime(), targetFile)) {
+                filesSkipped.incrementAndGet();
+            } else {
+                Files.copy(source.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                if (file.getMtime() > 0) {
+                    targetFile.setLastModified(file.getMtime());
+                }
+                bytesDone.addAndGet(file.getSize());
+            }
+            fileDone(file.getSize());
+        }
+    }
+
+    /**
+     * 记录一个文件处理完毕，按固定频率报告进度，避免UI更新过频
+     */
+    private void fileDone(long size) {
+        int done = filesDone.incrementAndGet();
+        if (tracker.advance(1, size)) {
+            double seconds = Math.max((System.nanoTime() - startTime) / 1e9, 0.001);
+            report(String.format("  Extracted %d/%d files, %d unchanged (%.1f MB/s)",
+                    done, totalFiles, filesSkipped.get(), bytesDone.get() / 1048576.0 / seconds));
+        }
+    }
+
+    /**
+     * 比较写入文件的SHA-256与包中的记录
+     */
+    private static void verifyHash(String name, String expected, String actual) throws IOException {
+        if (!expected.equalsIgnoreCase(actual)) {
+            throw new IOException("Verification failed, SHA-256 mismatch: " + name);
+        }
+    }
+
+    /**
+     * 计算文件的SHA-256
+     */
+    private static String sha256Of(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ZipCodecPool.acquireBuffer();
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            while (in.read(buffer) != -1) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+        } finally {
+            ZipCodecPool.releaseBuffer(buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void reportSummary() {
+        double seconds = Math.max((System.nanoTime() - startTime) / 1e9, 0.001);
+        report(String.format("Extracted %d files, %.1f MB in %.1f s (%.1f MB/s)",
+                filesDone.get() - filesSkipped.get(), bytesDone.get() / 1048576.0, seconds,
+                bytesDone.get() / 1048576.0 / seconds));
+        if (filesSkipped.get() > 0) {
+            report(String.format("Skipped %d unchanged files", filesSkipped.get()));
+        }
+        if (filesVerified.get() > 0) {
+            report(String.format("Verified %d files (%s)", filesVerified.get(),
+                    options.getVerifyMode() == VerifyMode.FULL ? "SHA-256" : "CRC"));
+        }
+        tracker.enter(ProgressEvent.Phase.FINALIZING);
+    }
+
+    /**
+     * 删除临时目录及其内容
+     */
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete temp directory: " + dir, e);
+        }
+    }
+
+    /**
+     * 判断已有文件是否与条目内容相同
+     * 大小不同时一定变化；否则比较CRC，完整校验模式下有哈希记录时同时比较SHA-256。
+     * 开启trustModificationTime时，修改时间相同（ZIP中的时间精度为2秒）可直接认为未变化
+     * @param sha256 包中记录的SHA-256，没有时为null
+     */
+    private boolean isUnchanged(long size, long crc, String sha256, long time, File targetFile) throws IOException {
+        if (!targetFile.isFile() || targetFile.length() != size) {
+            return false;
+        }
+        long timeDiff = targetFile.lastModified() - time;
+        if (options.isTrustModificationTime() && time > 0 && timeDiff >= 0 && timeDiff < 2000) {
+            return true;
+        }
+
+        CRC32 actual = new CRC32();
+        MessageDigest digest = sha256 != null && options.getVerifyMode() == VerifyMode.FULL ? newSha256() : null;
+        ByteBuffer buffer = ZipCodecPool.acquireBuffer();
+        try (FileChannel in = FileChannel.open(targetFile.toPath())) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+                actual.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            ZipCodecPool.releaseBuffer(buffer);
+        }
+        if (actual.getValue() != crc) {
+            return false;
+        }
+        return digest == null || HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(sha256);
+    }
+
+    /**
+     * 创建目录（每个目录只创建一次，其他线程等待创建完成）
+     */
+    private void ensureDirectory(File dir) throws IOException {
+        try {
+            createdDirs.computeIfAbsent(dir, d -> {
+                try {
+                    Files.createDirectories(d.toPath());
+                    return Boolean.TRUE;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "package-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void report(String message) {
+        if (progressCallback != null) {
+            progressCallback.accept(message);
+        }
+    }
+}
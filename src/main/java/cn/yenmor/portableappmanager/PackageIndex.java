@@ -0,0 +1,59 @@
+package cn.yenmor.portableappmanager;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 软件包文件索引
+ * 作为.pam/index.json写在包的末尾，记录包内每个文件的内容信息。
+ * .pam/是包内保留的目录，导出时应用目录中的同名目录被跳过，不会与应用的文件冲突
+ */
+public class PackageIndex {
+    public static final String RESERVED_PREFIX = ".pam/";
+    public static final String ENTRY_NAME = RESERVED_PREFIX + "index.json";
+
+    private List<PackageFileEntry> files;
+
+    private static final Gson gson = new Gson();
+
+    public PackageIndex() {
+        this.files = new ArrayList<>();
+    }
+
+    public List<PackageFileEntry> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<PackageFileEntry> files) {
+        this.files = files;
+    }
+
+    /**
+     * 按路径建立文件记录的映射
+     */
+    public Map<String, PackageFileEntry> toPathMap() {
+        Map<String, PackageFileEntry> map = new HashMap<>(files.size() * 2);
+        for (PackageFileEntry file : files) {
+            map.put(file.getPath(), file);
+        }
+        return map;
+    }
+
+    /**
+     * 转换为JSON字符串（文件较多，不使用美化格式）
+     */
+    public String toJson() {
+        return gson.toJson(this);
+    }
+
+    /**
+     * 从JSON字符串创建PackageIndex实例
+     */
+    public static PackageIndex fromJson(String json) {
+        return gson.fromJson(json, PackageIndex.class);
+    }
+}
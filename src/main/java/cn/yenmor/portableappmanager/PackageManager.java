@@ -1,20 +1,23 @@
 package cn.yenmor.portableappmanager;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 /**
  * 软件包管理器
@@ -22,7 +25,6 @@ import java.util.zip.ZipOutputStream;
  */
 public class PackageManager {
     private static final Logger logger = Logger.getLogger(PackageManager.class.getName());
-    private static final int BUFFER_SIZE = 8192;
 
     /**
      * 导出单个应用到ZIP文件
@@ -43,77 +45,104 @@ public class PackageManager {
      * @return 是否成功
      */
     public static boolean exportApps(List<AppEntry> apps, String zipOutputPath, Consumer<String> progressCallback) {
-        if (apps == null || apps.isEmpty()) {
-            logger.severe("No apps to export");
+        return exportApps(apps, zipOutputPath, progressCallback, new ExportOptions());
+    }
+
+    /**
+     * 导出多个应用到ZIP文件
+     * @param apps 应用列表
+     * @param zipOutputPath ZIP文件输出路径
+     * @param progressCallback 进度回调
+     * @param options 导出选项（并行压缩等）
+     * @return 是否成功
+     */
+    public static boolean exportApps(List<AppEntry> apps, String zipOutputPath, Consumer<String> progressCallback,
+                                     ExportOptions options) {
+        if (!canExport(apps)) {
             return false;
         }
 
-        // 验证所有应用存在
-        for (AppEntry app : apps) {
-            if (!app.exists()) {
-                logger.severe("Application not found: " + app.getName());
-                return false;
+        if (options != null && options.getBaselinePackage() != null
+                && new File(options.getBaselinePackage()).getAbsoluteFile().equals(new File(zipOutputPath).getAbsoluteFile())) {
+            // 输出文件会被截断，不能同时作为基线包读取
+            logger.severe("Baseline package cannot be the output file: " + zipOutputPath);
+            return false;
+        }
+
+        try {
+            // 创建ZIP文件（各文件由导出引擎压缩后按顺序写入）
+            try (FileChannel channel = FileChannel.open(Paths.get(zipOutputPath), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writePackage(apps, channel, progressCallback, options);
             }
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Export failed", e);
+            // 删除不完整的ZIP文件
+            new File(zipOutputPath).delete();
+            return false;
         }
+    }
 
+    /**
+     * 导出多个应用，写入输出流（管道、套接字、标准输出等）
+     * 导出完成后刷新输出流，但不关闭
+     * @param apps 应用列表
+     * @param out 输出流
+     * @param progressCallback 进度回调
+     * @param options 导出选项
+     * @return 是否成功（失败时已写出的数据无法撤回，接收方会得到不完整的包）
+     */
+    public static boolean exportApps(List<AppEntry> apps, OutputStream out, Consumer<String> progressCallback,
+                                     ExportOptions options) {
+        if (!exportApps(apps, Channels.newChannel(out), progressCallback, options)) {
+            return false;
+        }
         try {
-            // 创建PackageEntry
-            PackageEntry packageEntry = new PackageEntry();
-            packageEntry.setAppEntries(apps);
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Export failed", e);
+            return false;
+        }
+    }
 
-            // 创建ZIP文件
-            try (ZipOutputStream zos = new ZipOutputStream(
-                    new BufferedOutputStream(new FileOutputStream(zipOutputPath)))) {
+    /**
+     * 导出多个应用，写入任意通道（通道不关闭）
+     * 包按顺序写出，不需要定位；同时处于压缩中或等待写入的条目数量有限，
+     * 输出较慢时压缩线程随之等待，内存占用不随包的大小增长。通道需为阻塞模式
+     * @param apps 应用列表
+     * @param channel 输出通道
+     * @param progressCallback 进度回调
+     * @param options 导出选项
+     * @return 是否成功
+     */
+    public static boolean exportApps(List<AppEntry> apps, WritableByteChannel channel, Consumer<String> progressCallback,
+                                     ExportOptions options) {
+        if (!canExport(apps)) {
+            return false;
+        }
 
-                // 添加manifest.json
-                if (progressCallback != null) {
-                    progressCallback.accept("Adding manifest...");
-                }
-                addManifestToZip(zos, packageEntry);
-
-                // 对每个应用添加文件
-                for (int i = 0; i < apps.size(); i++) {
-                    AppEntry app = apps.get(i);
-                    if (progressCallback != null) {
-                        progressCallback.accept(String.format("Exporting %d/%d: %s", i + 1, apps.size(), app.getName()));
-                    }
-
-                    // 获取应用文件和所在目录（使用配置中的相对路径）
-                    String appPath = app.getPath();
-                    File appFile = app.getAbsoluteFile();
-                    File appDir = appFile.getParentFile();
-
-                    // 计算相对路径中的目录部分（例如："MyDir/app.exe" -> "MyDir/"）
-                    Path appFilePath = Paths.get(appPath);
-                    Path appDirPath = appFilePath.getParent();
-                    String basePath = appDirPath != null ? appDirPath.toString() + "/" : "";
-
-                    // 添加应用目录到ZIP（从应用所在目录开始打包）
-                    addDirectoryToZip(zos, appDir, basePath, progressCallback);
-
-                    // 添加图标（如果存在）
-                    if (app.getIconPath() != null && !app.getIconPath().isEmpty()) {
-                        File iconFile = new File(app.getIconPath());
-                        if (iconFile.exists()) {
-                            addFileToZip(zos, iconFile, "icons/" + iconFile.getName());
-                        }
-                    }
+        try {
+            writePackage(apps, new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    return channel.write(src);
                 }
 
-                if (progressCallback != null) {
-                    progressCallback.accept("Finalizing package...");
+                @Override
+                public boolean isOpen() {
+                    return channel.isOpen();
                 }
 
-                // 显式刷新以确保所有数据写入
-                zos.flush();
-
-                // ZipOutputStream关闭时会自动完成（try-with-resources）
-                return true;
-            }
+                @Override
+                public void close() {
+                    // 通道由调用方关闭
+                }
+            }, progressCallback, options);
+            return true;
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Export failed", e);
-            // 删除不完整的ZIP文件
-            new File(zipOutputPath).delete();
             return false;
         }
     }
@@ -126,125 +155,121 @@ public class PackageManager {
      * @return 导入的应用列表
      */
     public static List<AppEntry> importPackage(String zipPath, String targetBasePath, ImportStrategy strategy) {
+        return importPackage(zipPath, targetBasePath, strategy, new ImportOptions(), null);
+    }
+
+    /**
+     * 从ZIP文件导入应用
+     * @param zipPath ZIP文件路径
+     * @param targetBasePath 目标基础路径
+     * @param strategy 导入策略
+     * @param options 导入选项（并行解压、只导入选中的应用等）
+     * @param progressCallback 进度回调
+     * @return 导入的应用列表
+     */
+    public static List<AppEntry> importPackage(String zipPath, String targetBasePath, ImportStrategy strategy,
+                                               ImportOptions options, Consumer<String> progressCallback) {
         File zipFile = new File(zipPath);
         if (!zipFile.exists()) {
             throw new IllegalArgumentException("Package file not found: " + zipPath);
         }
 
-        List<AppEntry> importedApps = new ArrayList<>();
+        if (options == null) {
+            options = new ImportOptions();
+        }
+
         PackageEntry packageEntry = null;
 
-        try {
-            // 第一遍：读取manifest.json
-            packageEntry = readManifestFromZip(String.valueOf(zipFile));
+        // 通过中央目录随机访问：manifest.json直接定位读取，其余条目一次遍历解压
+        try (ZipArchiveReader zip = ZipArchiveReader.open(zipFile.toPath())) {
+            // 读取manifest.json
+            packageEntry = readManifest(zip);
             if (packageEntry == null) {
                 throw new IOException("Invalid package: missing or invalid manifest.json");
             }
 
-            // 检查重复应用
-            List<AppEntry> currentApps = ConfigManager.loadApps();
-            Set<String> currentNames = currentApps.stream()
-                    .map(AppEntry::getName)
-                    .map(String::toLowerCase)
-                    .collect(Collectors.toSet());
-
-            // 处理名称冲突
+            // 替换和添加的应用在解压完成后一起提交
+            ConfigBatch batch = ConfigManager.batch();
             Map<String, String> nameMapping = new HashMap<>();
-            for (AppEntry app : packageEntry.getAppEntries()) {
-                String originalName = app.getName();
-                String finalName = originalName;
-
-                if (currentNames.contains(originalName.toLowerCase())) {
-                    switch (strategy) {
-                        case SKIP:
-                            continue; // 跳过此应用
-                        case REPLACE:
-                            // 删除现有应用
-                            AppEntry existingApp = currentApps.stream()
-                                    .filter(a -> a.getName().equalsIgnoreCase(originalName))
-                                    .findFirst()
-                                    .orElse(null);
-                            if (existingApp != null) {
-                                ConfigManager.removeApp(existingApp.getId());
-                            }
-                            finalName = originalName;
-                            break;
-                        case RENAME:
-                            // 添加数字后缀
-                            int suffix = 2;
-                            do {
-                                finalName = originalName + " (" + suffix + ")";
-                                suffix++;
-                            } while (currentNames.contains(finalName.toLowerCase()));
-                            break;
-                    }
-                }
-
-                nameMapping.put(originalName, finalName);
-                currentNames.add(finalName.toLowerCase());
+            List<AppEntry> acceptedApps = acceptApps(packageEntry, strategy, options, nameMapping, batch);
+
+            // 解压文件：只解压被接受的应用所对应的条目（旧版本的包没有记录条目，解压全部）
+            Set<String> wantedEntries = collectWantedEntries(packageEntry, acceptedApps);
+            PackageIndex index = readIndex(zip);
+            boolean delta = packageEntry.getMetadata() != null && packageEntry.getMetadata().isDelta();
+            if (delta) {
+                checkBaselineInstalled(index, wantedEntries, targetBasePath);
             }
-
-            // 第二遍：解压文件
-            try (ZipInputStream zis = new ZipInputStream(
-                    new BufferedInputStream(new FileInputStream(zipFile)))) {
-
-                ZipEntry entry;
-                while ((entry = zis.getNextEntry()) != null) {
-                    String entryName = entry.getName();
-
-                    // 安全检查：防止路径遍历攻击
-                    if (entryName.contains("..")) {
-                        logger.warning("Skipping potentially malicious entry: " + entryName);
-                        continue;
-                    }
-
-                    if (entryName.equals("manifest.json")) {
-                        // 跳过manifest.json，已经在第一遍读取过了
-                        zis.closeEntry();
-                        continue;
-                    } else if (entryName.startsWith("icons/")) {
-                        // 提取图标文件
-                        File iconDir = new File(ConstVars.ICONS_DIR);
-                        if (!iconDir.exists()) {
-                            iconDir.mkdirs();
-                        }
-                        File targetFile = new File(ConstVars.ICONS_DIR + new File(entryName).getName());
-                        extractZipEntry(zis, entry, targetFile);
-                    } else {
-                        // 提取应用文件到项目根目录，保持原有目录结构
-                        File targetFile = new File(targetBasePath, entryName);
-                        extractZipEntry(zis, entry, targetFile);
-                    }
-
-                    zis.closeEntry();
-                }
+            List<PackageImporter.ExtractItem> items = planExtraction(zip, index, packageEntry.getSolidBlocks(),
+                    wantedEntries);
+            PackageImporter importer = new PackageImporter(options, progressCallback);
+            importer.extract(items, targetBasePath);
+            if (delta && packageEntry.getDeletedFiles() != null) {
+                importer.delete(filterDeletions(packageEntry.getDeletedFiles(), acceptedApps), targetBasePath);
             }
 
-            // 创建AppEntry对象（可能需要重命名）
-            for (AppEntry originalApp : packageEntry.getAppEntries()) {
-                String originalName = originalApp.getName();
-                String finalName = nameMapping.getOrDefault(originalName, originalName);
+            List<AppEntry> importedApps = saveImportedApps(acceptedApps, nameMapping, batch);
+            InstallVerifier.recordImport(packageEntry, index, acceptedApps, importedApps);
+            importer.finish();
 
-                // 如果被跳过，不添加到列表
-                if (finalName.equals(originalName) && strategy == ImportStrategy.SKIP
-                        && currentApps.stream().anyMatch(a -> a.getName().equalsIgnoreCase(originalName))) {
-                    continue;
-                }
+            return importedApps;
 
-                // 创建新的AppEntry
-                String newId = ConfigManager.generateId();
-                String iconPath = "";
-                if (originalApp.getIconPath() != null && !originalApp.getIconPath().isEmpty()) {
-                    String iconFileName = new File(originalApp.getIconPath()).getName();
-                    iconPath = ConstVars.ICONS_DIR + iconFileName;
-                }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Import failed", e);
+            throw new RuntimeException("Failed to import package: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从输入流导入应用（管道、套接字等，不需要先保存为文件）
+     * 按顺序读取各条目：manifest.json必须是第一个条目，内容去重的文件在读到包末尾的index.json后补齐。
+     * 输入流读到包末尾，但不关闭。增量包需要在解压前检查基线，只能从文件导入
+     * @param in 输入流
+     * @param targetBasePath 目标基础路径
+     * @param strategy 导入策略
+     * @param options 导入选项（只导入选中的应用、跳过未变化文件等；流中的条目只能依次解压）
+     * @param progressCallback 进度回调
+     * @return 导入的应用列表
+     */
+    public static List<AppEntry> importPackage(InputStream in, String targetBasePath, ImportStrategy strategy,
+                                               ImportOptions options, Consumer<String> progressCallback) {
+        if (options == null) {
+            options = new ImportOptions();
+        }
+
+        try {
+            ZipInputStream zin = new ZipInputStream(new BufferedInputStream(in, ZipCodecPool.BUFFER_SIZE),
+                    StandardCharsets.UTF_8);
+            ZipEntry first = zin.getNextEntry();
+            if (first == null || !first.getName().equals("manifest.json")) {
+                throw new IOException("Invalid package: manifest.json must be the first entry");
+            }
+            PackageEntry packageEntry = PackageEntry.fromJson(new String(zin.readAllBytes(), StandardCharsets.UTF_8));
+            if (packageEntry == null) {
+                throw new IOException("Invalid package: missing or invalid manifest.json");
+            }
+            if (packageEntry.getMetadata() != null && packageEntry.getMetadata().isDelta()) {
+                throw new IOException("Delta packages can only be imported from a file");
+            }
 
-                AppEntry newApp = new AppEntry(newId, finalName, originalApp.getPath(), iconPath);
-                importedApps.add(newApp);
+            // 替换和添加的应用在解压完成后一起提交
+            ConfigBatch batch = ConfigManager.batch();
+            Map<String, String> nameMapping = new HashMap<>();
+            List<AppEntry> acceptedApps = acceptApps(packageEntry, strategy, options, nameMapping, batch);
 
-                // 保存到配置
-                ConfigManager.addApp(newApp);
+            Set<String> wantedEntries = collectWantedEntries(packageEntry, acceptedApps);
+            long totalBytes = 0;
+            for (AppEntry app : acceptedApps) {
+                PackageAppContent content = packageEntry.getAppContent(app.getId());
+                totalBytes += content != null ? content.getTotalSize() : 0;
             }
+            PackageImporter importer = new PackageImporter(options, progressCallback);
+            PackageIndex index = importer.extractStream(zin, wantedEntries, packageEntry.getSolidBlocks(),
+                    packageEntry.getBlobs(), totalBytes, targetBasePath);
+
+            List<AppEntry> importedApps = saveImportedApps(acceptedApps, nameMapping, batch);
+            InstallVerifier.recordImport(packageEntry, index, acceptedApps, importedApps);
+            importer.finish();
 
             return importedApps;
 
@@ -261,33 +286,95 @@ public class PackageManager {
      * @return 所有导入的应用（去重后）
      */
     public static List<AppEntry> mergePackages(List<String> zipPaths, String targetBasePath) {
+        return mergePackages(zipPaths, targetBasePath, new ImportOptions(), null);
+    }
+
+    /**
+     * 合并多个ZIP包
+     * 先读取所有包的清单统一规划：名称冲突自动重命名，同一文件以后面的包为准，
+     * 每个文件只解压一次，最后一次性写入配置
+     * @param zipPaths ZIP文件路径列表
+     * @param targetBasePath 目标基础路径
+     * @param options 导入选项（并行解压等）
+     * @param progressCallback 进度回调
+     * @return 所有导入的应用（去重后）
+     */
+    public static List<AppEntry> mergePackages(List<String> zipPaths, String targetBasePath,
+                                               ImportOptions options, Consumer<String> progressCallback) {
         if (zipPaths == null || zipPaths.isEmpty()) {
             throw new IllegalArgumentException("No packages to merge");
         }
 
-        List<AppEntry> allApps = new ArrayList<>();
-        Map<String, AppEntry> appMap = new LinkedHashMap<>(); // 保持插入顺序
+        try {
+            return new PackageMerger(options, progressCallback).merge(zipPaths, targetBasePath);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Merge failed", e);
+            throw new RuntimeException("Failed to merge packages: " + e.getMessage(), e);
+        }
+    }
 
-        for (String zipPath : zipPaths) {
-            try {
-                // 使用RENAME策略避免冲突
-                List<AppEntry> importedApps = importPackage(zipPath, targetBasePath, ImportStrategy.RENAME);
+    /**
+     * 将多个ZIP包合并为一个新包（不导入）
+     * 条目的压缩数据原样复制，不重新压缩；内容相同的文件只保存一份
+     * @param zipPaths ZIP文件路径列表
+     * @param zipOutputPath 新包的输出路径
+     * @param strategy 应用重名时的处理策略
+     * @param progressCallback 进度回调
+     * @return 是否成功
+     */
+    public static boolean mergePackagesToFile(List<String> zipPaths, String zipOutputPath,
+                                              ImportStrategy strategy, Consumer<String> progressCallback) {
+        return mergePackagesToFile(zipPaths, zipOutputPath, strategy, new ImportOptions(), progressCallback);
+    }
 
-                // 根据应用名称去重（保留首次出现的）
-                for (AppEntry app : importedApps) {
-                    String key = app.getName().toLowerCase();
-                    if (!appMap.containsKey(key)) {
-                        appMap.put(key, app);
-                    }
-                }
+    /**
+     * 将多个ZIP包合并为一个新包（不导入）
+     * @param zipPaths ZIP文件路径列表
+     * @param zipOutputPath 新包的输出路径
+     * @param strategy 应用重名时的处理策略
+     * @param options 导入选项（进度监听器）
+     * @param progressCallback 进度回调
+     * @return 是否成功
+     */
+    public static boolean mergePackagesToFile(List<String> zipPaths, String zipOutputPath, ImportStrategy strategy,
+                                              ImportOptions options, Consumer<String> progressCallback) {
+        if (zipPaths == null || zipPaths.isEmpty()) {
+            throw new IllegalArgumentException("No packages to merge");
+        }
 
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Failed to merge package: " + zipPath, e);
-                // 继续处理其他包
+        try {
+            try (FileChannel channel = FileChannel.open(Paths.get(zipOutputPath), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                new PackageMerger(options, progressCallback).mergeToFile(zipPaths, channel, strategy);
             }
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Merge to file failed", e);
+            // 删除不完整的ZIP文件
+            new File(zipOutputPath).delete();
+            return false;
         }
+    }
 
-        return new ArrayList<>(appMap.values());
+    /**
+     * 检查已安装应用的完整性
+     * 与导入或导出时保存的安装清单比较，报告每个应用缺失、损坏和多余的文件；
+     * 所有应用的文件在同一个工作线程池中并行计算哈希
+     * @param apps 应用列表
+     * @param targetBasePath 应用所在的基础路径
+     * @param mode 校验模式（NONE只比较大小，FAST比较CRC，FULL比较SHA-256）
+     * @param progressListener 进度监听器
+     * @return 每个应用的检查结果
+     */
+    public static List<VerifyReport> verifyApps(List<AppEntry> apps, String targetBasePath, VerifyMode mode,
+                                                Consumer<ProgressEvent> progressListener) {
+        try {
+            return new InstallVerifier(mode, Runtime.getRuntime().availableProcessors(), progressListener)
+                    .verify(apps, targetBasePath);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Verify failed", e);
+            throw new RuntimeException("Failed to verify applications: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -307,133 +394,321 @@ public class PackageManager {
     // ==================== 私有辅助方法 ====================
 
     /**
-     * 添加manifest.json到ZIP
+     * 汇总需要解压的条目
+     * @return 条目名称集合，包中没有记录应用内容时返回null（表示全部解压）
      */
-    private static void addManifestToZip(ZipOutputStream zos, PackageEntry packageEntry) throws IOException {
-        ZipEntry entry = new ZipEntry("manifest.json");
-        zos.putNextEntry(entry);
+    static Set<String> collectWantedEntries(PackageEntry packageEntry, List<AppEntry> apps) {
+        Set<String> wanted = new HashSet<>();
+        for (AppEntry app : apps) {
+            PackageAppContent content = packageEntry.getAppContent(app.getId());
+            if (content == null) {
+                return null;
+            }
+            wanted.addAll(content.getEntries());
+        }
+        return wanted;
+    }
+
+    /**
+     * 规划需要解压的条目
+     * 2.0格式的包中，内容重复的文件没有单独的条目，从index.json中记录的条目解压；
+     * 增量包中以补丁形式保存的文件，应用补丁条目；固实块中的文件，从块中的偏移量处解压
+     * @param solidBlocks 清单中记录的固实块，普通包为null
+     * @param wantedEntries 需要的条目名称，为null时解压全部
+     */
+    static List<PackageImporter.ExtractItem> planExtraction(ZipArchiveReader zip, PackageIndex index,
+                                                            List<PackageSolidBlock> solidBlocks,
+                                                            Set<String> wantedEntries) throws IOException {
+        List<PackageImporter.ExtractItem> items = new ArrayList<>();
+        Set<String> planned = new HashSet<>();
+        // 补丁条目和固实块不是文件本身，在下面按索引和清单处理
+        Set<String> dataEntries = new HashSet<>();
+        Map<String, PackageFileEntry> records = index != null ? index.toPathMap() : Map.of();
+        for (PackageFileEntry file : records.values()) {
+            if (file.getPatch() != null) {
+                dataEntries.add(file.getPatch());
+            }
+        }
+        if (solidBlocks != null) {
+            for (PackageSolidBlock block : solidBlocks) {
+                dataEntries.add(block.getEntry());
+            }
+        }
 
-        byte[] manifestBytes = packageEntry.toJson().getBytes(StandardCharsets.UTF_8);
-        zos.write(manifestBytes);
+        for (ZipArchiveReader.Entry entry : zip.entries()) {
+            String entryName = entry.name();
 
-        zos.closeEntry();
+            // 安全检查：防止路径遍历攻击
+            if (entryName.contains("..")) {
+                logger.warning("Skipping potentially malicious entry: " + entryName);
+                continue;
+            }
+            // manifest.json和index.json已经读取过了
+            if (entryName.equals("manifest.json") || entryName.equals(PackageIndex.ENTRY_NAME)) {
+                continue;
+            }
+            if (dataEntries.contains(entryName)) {
+                continue;
+            }
+            if (wantedEntries == null || wantedEntries.contains(entryName)) {
+                items.add(new PackageImporter.ExtractItem(zip, entry, entryName, records.get(entryName)));
+                planned.add(entryName);
+            }
+        }
+
+        if (solidBlocks != null) {
+            planSolidBlocks(zip, records, solidBlocks, wantedEntries, items, planned);
+        }
+        if (index == null) {
+            return items;
+        }
+
+        // 内容去重的文件：从保存该内容的条目解压；补丁文件：应用补丁条目
+        for (PackageFileEntry file : index.getFiles()) {
+            String path = file.getPath();
+            if ((file.getBlob() == null && file.getPatch() == null) || planned.contains(path)
+                    || (wantedEntries != null && !wantedEntries.contains(path))) {
+                continue;
+            }
+            if (path.contains("..")) {
+                logger.warning("Skipping potentially malicious entry: " + path);
+                continue;
+            }
+            ZipArchiveReader.Entry source = zip.getEntry(file.getPatch() != null ? file.getPatch() : file.getBlob());
+            if (source == null) {
+                throw new IOException("Invalid package: missing content for " + path);
+            }
+            items.add(new PackageImporter.ExtractItem(zip, source, path, file));
+            planned.add(path);
+        }
+
+        return items;
     }
 
     /**
-     * 从ZIP读取manifest.json
+     * 规划固实块中需要的文件（同一块中的文件由导入引擎合并，块只解压一次）
      */
-    private static PackageEntry readManifestFromZip(String zipPath) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(
-                new BufferedInputStream(new FileInputStream(zipPath)))) {
-
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if ("manifest.json".equals(entry.getName())) {
-                    byte[] bytes = zis.readAllBytes();
-                    String json = new String(bytes, StandardCharsets.UTF_8);
-                    return PackageEntry.fromJson(json);
+    private static void planSolidBlocks(ZipArchiveReader zip, Map<String, PackageFileEntry> records,
+                                        List<PackageSolidBlock> solidBlocks, Set<String> wantedEntries,
+                                        List<PackageImporter.ExtractItem> items, Set<String> planned)
+            throws IOException {
+        for (PackageSolidBlock block : solidBlocks) {
+            ZipArchiveReader.Entry source = zip.getEntry(block.getEntry());
+            if (source == null) {
+                throw new IOException("Invalid package: missing solid block " + block.getEntry());
+            }
+            long offset = 0;
+            for (PackageSolidBlock.Member member : block.getFiles()) {
+                String path = member.getPath();
+                long memberOffset = offset;
+                offset += member.getSize();
+                if (planned.contains(path) || (wantedEntries != null && !wantedEntries.contains(path))) {
+                    continue;
+                }
+                if (path.contains("..")) {
+                    logger.warning("Skipping potentially malicious entry: " + path);
+                    continue;
+                }
+                // 块中文件的CRC只记录在index.json中
+                PackageFileEntry file = records.get(path);
+                if (file == null || file.getSize() != member.getSize()) {
+                    throw new IOException("Invalid package: missing or inconsistent index record for " + path);
                 }
-                zis.closeEntry();
+                items.add(new PackageImporter.ExtractItem(zip, source, path, file, memberOffset));
+                planned.add(path);
             }
         }
+    }
 
-        return null;
+    /**
+     * 检查增量包的基线是否已安装：未变化的文件必须存在且大小一致，打补丁的文件必须存在
+     */
+    private static void checkBaselineInstalled(PackageIndex index, Set<String> wantedEntries, String targetBasePath)
+            throws IOException {
+        if (index == null) {
+            throw new IOException("Invalid package: delta package without index.json");
+        }
+        for (PackageFileEntry file : index.getFiles()) {
+            if ((!file.isUnchanged() && file.getPatch() == null)
+                    || (wantedEntries != null && !wantedEntries.contains(file.getPath()))) {
+                continue;
+            }
+            // 补丁文件的旧版本大小在应用补丁时检查
+            File target = PackageImporter.resolveTarget(file.getPath(), targetBasePath);
+            if (!target.isFile() || (file.isUnchanged() && target.length() != file.getSize())) {
+                throw new IOException("Delta package requires its baseline to be installed, missing or modified: "
+                        + file.getPath());
+            }
+        }
     }
 
     /**
-     * 递归添加目录到ZIP
+     * 只删除属于被导入应用目录中的文件
      */
-    private static void addDirectoryToZip(ZipOutputStream zos, File dir, String basePath,
-                                          Consumer<String> callback) throws IOException {
-        File[] files = dir.listFiles();
-        if (files == null) {
-            return;
-        }
-
-        // 获取基础路径（应用的可执行文件所在目录）
-        File baseDir = dir;
-        int fileCount = 0;
-
-        for (File file : files) {
-            if (file.isDirectory()) {
-                // 递归处理子目录
-                addDirectoryToZip(zos, file, basePath + file.getName() + "/", callback);
-            } else {
-                // 计算相对路径
-                String relativePath = basePath + getRelativePath(file, baseDir);
-                addFileToZip(zos, file, relativePath);
-
-                // 每10个文件报告一次进度，避免UI更新过频
-                fileCount++;
-                if (callback != null && fileCount % 10 == 0) {
-                    callback.accept("  Added " + fileCount + " files...");
+    private static List<String> filterDeletions(List<String> deletedFiles, List<AppEntry> apps) {
+        List<String> result = new ArrayList<>();
+        for (String path : deletedFiles) {
+            if (path.contains("..")) {
+                logger.warning("Skipping potentially malicious entry: " + path);
+                continue;
+            }
+            for (AppEntry app : apps) {
+                if (path.startsWith(ExportPlanner.basePathOf(app))) {
+                    result.add(path);
+                    break;
                 }
             }
         }
+        return result;
+    }
 
-        // 完成目录时报告
-        if (callback != null && fileCount > 0) {
-            callback.accept("  Completed: " + baseDir.getName() + " (" + fileCount + " files)");
+    /**
+     * 读取包末尾的.pam/index.json（较早导出的包没有索引）
+     */
+    static PackageIndex readIndex(ZipArchiveReader zip) throws IOException {
+        ZipArchiveReader.Entry entry = zip.getEntry(PackageIndex.ENTRY_NAME);
+        if (entry == null) {
+            return null;
+        }
+
+        try (InputStream in = zip.getInputStream(entry)) {
+            String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return PackageIndex.fromJson(json);
         }
     }
 
     /**
-     * 计算文件相对于基础目录的路径
+     * 检查要导出的应用是否都存在
      */
-    private static String getRelativePath(File file, File baseDir) {
-        try {
-            Path basePath = baseDir.toPath();
-            Path filePath = file.toPath();
-            return basePath.relativize(filePath).toString();
-        } catch (IllegalArgumentException e) {
-            // 如果无法计算相对路径，返回文件名
-            return file.getName();
+    private static boolean canExport(List<AppEntry> apps) {
+        if (apps == null || apps.isEmpty()) {
+            logger.severe("No apps to export");
+            return false;
+        }
+
+        // 验证所有应用存在
+        for (AppEntry app : apps) {
+            if (!app.exists()) {
+                logger.severe("Application not found: " + app.getName());
+                return false;
+            }
         }
+        return true;
     }
 
     /**
-     * 添加单个文件到ZIP
+     * 生成包清单并将应用导出到通道
      */
-    private static void addFileToZip(ZipOutputStream zos, File file, String entryPath) throws IOException {
-        ZipEntry entry = new ZipEntry(entryPath);
-        zos.putNextEntry(entry);
+    private static void writePackage(List<AppEntry> apps, WritableByteChannel channel, Consumer<String> progressCallback,
+                                     ExportOptions options) throws IOException {
+        PackageEntry packageEntry = new PackageEntry();
+        packageEntry.setAppEntries(apps);
+        new PackageExporter(options, progressCallback).export(apps, packageEntry, channel);
+    }
 
-        try (FileInputStream fis = new FileInputStream(file);
-             BufferedInputStream bis = new BufferedInputStream(fis)) {
+    /**
+     * 按导入策略处理包中选中的应用与已有应用的名称冲突
+     * @param nameMapping 输出：原名称到最终名称的映射
+     * @param batch 输出：替换策略下需要删除的已有应用
+     * @return 接受导入的应用（被跳过的应用不在其中）
+     */
+    private static List<AppEntry> acceptApps(PackageEntry packageEntry, ImportStrategy strategy, ImportOptions options,
+                                             Map<String, String> nameMapping, ConfigBatch batch) {
+        // 只处理选中的应用
+        List<AppEntry> selectedApps = new ArrayList<>();
+        for (AppEntry app : packageEntry.getAppEntries()) {
+            if (options.isSelected(app)) {
+                selectedApps.add(app);
+            }
+        }
 
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = bis.read(buffer)) != -1) {
-                zos.write(buffer, 0, bytesRead);
+        // 检查重复应用
+        AppIndex index = ConfigManager.getIndex();
+
+        // 处理名称冲突
+        List<AppEntry> acceptedApps = new ArrayList<>();
+        for (AppEntry app : selectedApps) {
+            String originalName = app.getName();
+            String finalName = originalName;
+
+            if (index.containsName(originalName)) {
+                switch (strategy) {
+                    case SKIP:
+                        continue; // 跳过此应用
+                    case REPLACE:
+                        // 删除现有应用
+                        AppEntry existingApp = index.findByName(originalName);
+                        if (existingApp != null) {
+                            batch.remove(existingApp.getId());
+                        }
+                        finalName = originalName;
+                        break;
+                    case RENAME:
+                        // 添加数字后缀
+                        finalName = index.uniqueName(originalName);
+                        break;
+                }
             }
+
+            nameMapping.put(originalName, finalName);
+            index.reserveName(finalName);
+            acceptedApps.add(app);
         }
+        return acceptedApps;
+    }
 
-        zos.closeEntry();
+    /**
+     * 创建导入应用的配置条目（可能需要重命名），与替换时的删除一起提交到配置
+     */
+    private static List<AppEntry> saveImportedApps(List<AppEntry> acceptedApps, Map<String, String> nameMapping,
+                                                   ConfigBatch batch) throws IOException {
+        List<AppEntry> importedApps = new ArrayList<>();
+        for (AppEntry originalApp : acceptedApps) {
+            String originalName = originalApp.getName();
+            String finalName = nameMapping.getOrDefault(originalName, originalName);
+            importedApps.add(toImportedApp(originalApp, finalName));
+        }
+        batch.addAll(importedApps).commit();
+        return importedApps;
     }
 
     /**
-     * 解压ZIP条目到目标位置
+     * 为包中的应用创建新的配置条目（新ID，图标指向图标目录，保留导出规则）
      */
-    private static void extractZipEntry(ZipInputStream zis, ZipEntry entry, File targetFile) throws IOException {
-        if (entry.isDirectory()) {
-            targetFile.mkdirs();
-            return;
+    static AppEntry toImportedApp(AppEntry originalApp, String finalName) {
+        String iconPath = "";
+        if (originalApp.getIconPath() != null && !originalApp.getIconPath().isEmpty()) {
+            String iconFileName = new File(originalApp.getIconPath()).getName();
+            iconPath = ConstVars.ICONS_DIR + iconFileName;
         }
+        AppEntry app = new AppEntry(originalApp);
+        app.setId(ConfigManager.generateId());
+        app.setName(finalName);
+        app.setIconPath(iconPath);
+        return app;
+    }
 
-        // 确保父目录存在
-        File parentDir = targetFile.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
+    /**
+     * 从ZIP读取manifest.json
+     */
+    private static PackageEntry readManifestFromZip(String zipPath) throws IOException {
+        try (ZipArchiveReader zip = ZipArchiveReader.open(Paths.get(zipPath))) {
+            return readManifest(zip);
         }
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(targetFile);
-             BufferedOutputStream bos = new BufferedOutputStream(fos)) {
+    /**
+     * 通过中央目录直接定位并读取manifest.json
+     */
+    static PackageEntry readManifest(ZipArchiveReader zip) throws IOException {
+        ZipArchiveReader.Entry entry = zip.getEntry("manifest.json");
+        if (entry == null) {
+            return null;
+        }
 
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = zis.read(buffer)) != -1) {
-                bos.write(buffer, 0, bytesRead);
-            }
+        try (InputStream in = zip.getInputStream(entry)) {
+            String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return PackageEntry.fromJson(json);
         }
     }
 }
@@ -0,0 +1,408 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 软件包合并规划器
+ * 先读取所有包的清单，统一处理应用名称冲突和文件冲突（同一路径以后面的包为准），
+ * 再把所有包中胜出的条目作为一批任务并行解压，每个文件只写入一次，配置也只保存一次。
+ * 也可以把多个包合并为一个新包：条目的压缩数据原样复制，不重新压缩
+ */
+class PackageMerger {
+    private static final Logger logger = Logger.getLogger(PackageMerger.class.getName());
+
+    private final ImportOptions options;
+    private final Consumer<String> progressCallback;
+    private final ProgressTracker tracker;
+
+    /**
+     * 已打开的包
+     * @param apps 该包中被接受的应用
+     */
+    private record Source(String path, ZipArchiveReader zip, PackageEntry packageEntry, List<AppEntry> apps) {
+    }
+
+    /**
+     * 合并到新包中的应用
+     */
+    private record MergedApp(Source source, AppEntry app, String finalName) {
+    }
+
+    PackageMerger(ImportOptions options, Consumer<String> progressCallback) {
+        this.options = options != null ? options : new ImportOptions();
+        this.progressCallback = progressCallback;
+        this.tracker = new ProgressTracker(this.options.getProgressListener());
+    }
+
+    /**
+     * 合并多个包到目标位置
+     * @param zipPaths ZIP文件路径列表
+     * @param targetBasePath 目标基础路径
+     * @return 导入的应用
+     */
+    List<AppEntry> merge(List<String> zipPaths, String targetBasePath) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        try {
+            for (String zipPath : zipPaths) {
+                try {
+                    sources.add(open(zipPath));
+                } catch (Exception e) {
+                    // 无法读取的包记录日志后跳过，继续处理其他包
+                    logger.log(Level.SEVERE, "Failed to merge package: " + zipPath, e);
+                }
+            }
+
+            // 统一处理名称冲突
+            List<AppEntry> mergedApps = resolveApps(sources);
+
+            // 规划文件：同一目标路径只保留最后一个包中的条目
+            Map<String, PackageImporter.ExtractItem> winners = new LinkedHashMap<>();
+            int plannedCount = 0;
+            for (Source source : sources) {
+                report("Planning " + new File(source.path()).getName() + "...");
+                Set<String> wanted = PackageManager.collectWantedEntries(source.packageEntry(), source.apps());
+                List<PackageImporter.ExtractItem> items = PackageManager.planExtraction(source.zip(),
+                        PackageManager.readIndex(source.zip()), source.packageEntry().getSolidBlocks(), wanted);
+                for (PackageImporter.ExtractItem item : items) {
+                    winners.put(item.targetName(), item);
+                }
+                plannedCount += items.size();
+            }
+            if (plannedCount > winners.size()) {
+                report(String.format("  %d files are overridden by later packages", plannedCount - winners.size()));
+            }
+
+            PackageImporter importer = new PackageImporter(options, progressCallback);
+            importer.extract(new ArrayList<>(winners.values()), targetBasePath);
+
+            ConfigManager.batch().addAll(mergedApps).commit();
+            InstallVerifier.recordMerge(mergedApps, winners.values());
+            importer.finish();
+            return mergedApps;
+        } finally {
+            closeAll(sources);
+        }
+    }
+
+    /**
+     * 将多个包合并为一个新包
+     * 应用重名时按导入策略处理，同一路径的文件以后面的包为准；
+     * 内容相同的文件只保存一份（2.0格式）
+     * @param zipPaths ZIP文件路径列表
+     * @param channel 输出通道
+     * @param strategy 应用重名时的处理策略
+     * @return 新包的清单
+     */
+    PackageEntry mergeToFile(List<String> zipPaths, WritableByteChannel channel, ImportStrategy strategy)
+            throws IOException {
+        List<Source> sources = new ArrayList<>();
+        try {
+            for (String zipPath : zipPaths) {
+                Source source = open(zipPath);
+                sources.add(source);
+                // 固实块中的文件没有单独的条目，无法原样复制
+                if (source.packageEntry().getSolidBlocks() != null) {
+                    throw new IOException("Solid packages cannot be merged into a file: " + zipPath);
+                }
+            }
+
+            List<MergedApp> mergedApps = resolveApps(sources, strategy);
+
+            // 规划文件：同一路径只保留最后一个包中的条目
+            Map<String, Source> winners = new LinkedHashMap<>();
+            Map<MergedApp, PackageAppContent> sourceContents = new IdentityHashMap<>();
+            for (Source source : sources) {
+                for (MergedApp merged : mergedApps) {
+                    if (merged.source() == source) {
+                        PackageAppContent content = contentOf(source, merged.app());
+                        sourceContents.put(merged, content);
+                        for (String entryName : content.getEntries()) {
+                            winners.put(entryName, source);
+                        }
+                    }
+                }
+            }
+
+            // 清单只依赖应用列表和文件大小，可以先于文件写入
+            Map<String, PackageFileEntry> recordsByPath = planRecords(winners);
+            List<AppEntry> apps = new ArrayList<>();
+            List<PackageAppContent> contents = new ArrayList<>();
+            Set<String> usedIds = new HashSet<>();
+            for (MergedApp merged : mergedApps) {
+                // 不同包中的应用ID可能相同
+                String id = merged.app().getId();
+                if (id == null || !usedIds.add(id)) {
+                    id = ConfigManager.generateId();
+                    usedIds.add(id);
+                }
+                // 复制应用条目，保留导出规则
+                AppEntry app = new AppEntry(merged.app());
+                app.setId(id);
+                app.setName(merged.finalName());
+                apps.add(app);
+
+                PackageAppContent content = new PackageAppContent(id);
+                for (String entryName : sourceContents.get(merged).getEntries()) {
+                    content.addEntry(entryName, recordsByPath.get(entryName).getSize());
+                }
+                contents.add(content);
+            }
+
+            PackageEntry packageEntry = new PackageEntry();
+            packageEntry.setAppEntries(apps);
+            packageEntry.setAppContents(contents);
+            Map<String, String> blobs = planBlobs(winners, recordsByPath);
+            packageEntry.setBlobs(blobs);
+            // 有去重的文件时旧版本的程序无法完整导入
+            if (!blobs.isEmpty()) {
+                packageEntry.getMetadata().setVersion(PackageMetadata.FORMAT_V2);
+            }
+            List<PackageFileEntry> records = new ArrayList<>();
+
+            try (ZipArchiveWriter writer = new ZipArchiveWriter(channel)) {
+                report("Adding manifest...");
+                PackageExporter.writeBytes(writer, "manifest.json",
+                        packageEntry.toJson().getBytes(StandardCharsets.UTF_8));
+
+                long totalBytes = 0;
+                for (PackageFileEntry record : recordsByPath.values()) {
+                    totalBytes += record.getSize();
+                }
+                tracker.start(ProgressEvent.Phase.EXPORTING, winners.size(), totalBytes);
+                copyEntries(writer, winners, recordsByPath, blobs, records);
+
+                report("Finalizing package...");
+                tracker.enter(ProgressEvent.Phase.FINALIZING);
+                PackageIndex index = new PackageIndex();
+                index.setFiles(records);
+                PackageExporter.writeBytes(writer, PackageIndex.ENTRY_NAME, index.toJson().getBytes(StandardCharsets.UTF_8));
+            }
+            tracker.enter(ProgressEvent.Phase.DONE);
+            return packageEntry;
+        } finally {
+            closeAll(sources);
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 打开包并读取清单
+     */
+    private static Source open(String zipPath) throws IOException {
+        ZipArchiveReader zip = ZipArchiveReader.open(new File(zipPath).toPath());
+        try {
+            PackageEntry packageEntry = PackageManager.readManifest(zip);
+            if (packageEntry == null) {
+                throw new IOException("Invalid package: missing or invalid manifest.json");
+            }
+            if (packageEntry.getMetadata() != null && packageEntry.getMetadata().isDelta()) {
+                // 增量包只能导入到已安装的基线之上
+                throw new IOException("Delta packages cannot be merged: " + zipPath);
+            }
+            return new Source(zipPath, zip, packageEntry, new ArrayList<>());
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    private static void closeAll(List<Source> sources) {
+        for (Source source : sources) {
+            try {
+                source.zip().close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to close package: " + source.path(), e);
+            }
+        }
+    }
+
+    /**
+     * 按顺序处理所有包中的应用
+     * 名称和路径都相同的应用视为同一个应用（文件以后面的包为准），
+     * 与现有配置或其他应用重名时添加数字后缀
+     */
+    private List<AppEntry> resolveApps(List<Source> sources) {
+        AppIndex usedNames = ConfigManager.getIndex();
+
+        Map<String, String> mergedPaths = new HashMap<>();
+        List<AppEntry> mergedApps = new ArrayList<>();
+        for (Source source : sources) {
+            for (AppEntry app : source.packageEntry().getAppEntries()) {
+                if (!options.isSelected(app)) {
+                    continue;
+                }
+
+                String key = AppIndex.normalize(app.getName());
+                if (app.getPath().equals(mergedPaths.get(key))) {
+                    // 已由前面的包导入，只需要解压这个包中的文件
+                    source.apps().add(app);
+                    continue;
+                }
+
+                String finalName = usedNames.uniqueName(app.getName());
+                usedNames.reserveName(finalName);
+                mergedPaths.putIfAbsent(key, app.getPath());
+                source.apps().add(app);
+                mergedApps.add(PackageManager.toImportedApp(app, finalName));
+            }
+        }
+        return mergedApps;
+    }
+
+    /**
+     * 按导入策略处理各包之间的应用重名（后面的包中的应用与前面的重名时跳过、替换或重命名）
+     */
+    private List<MergedApp> resolveApps(List<Source> sources, ImportStrategy strategy) {
+        Map<String, MergedApp> accepted = new LinkedHashMap<>();
+        AppIndex names = new AppIndex();
+        for (Source source : sources) {
+            for (AppEntry app : source.packageEntry().getAppEntries()) {
+                String key = AppIndex.normalize(app.getName());
+                String finalName = app.getName();
+                if (names.containsName(finalName)) {
+                    switch (strategy) {
+                        case SKIP:
+                            continue;
+                        case REPLACE:
+                            accepted.remove(key);
+                            break;
+                        case RENAME:
+                            finalName = names.uniqueName(app.getName());
+                            break;
+                    }
+                }
+                names.reserveName(finalName);
+                accepted.put(AppIndex.normalize(finalName), new MergedApp(source, app, finalName));
+            }
+        }
+        return new ArrayList<>(accepted.values());
+    }
+
+    /**
+     * 应用在包中的内容（旧版本的包没有记录时，按应用目录和图标推算）
+     */
+    private static PackageAppContent contentOf(Source source, AppEntry app) {
+        PackageAppContent content = source.packageEntry().getAppContent(app.getId());
+        if (content != null) {
+            return content;
+        }
+
+        content = new PackageAppContent(app.getId());
+        String basePath = ExportPlanner.basePathOf(app);
+        String iconEntry = app.getIconPath() != null && !app.getIconPath().isEmpty()
+                ? "icons/" + new File(app.getIconPath()).getName() : null;
+        for (ZipArchiveReader.Entry entry : source.zip().entries()) {
+            String name = entry.name();
+            if (entry.isDirectory() || name.equals("manifest.json") || name.equals(PackageIndex.ENTRY_NAME)) {
+                continue;
+            }
+            if (name.startsWith(basePath) || name.equals(iconEntry)) {
+                content.addEntry(name, entry.size());
+            }
+        }
+        return content;
+    }
+
+    /**
+     * 确定每个文件的内容记录（取自源包的index.json，旧版本的包取自中央目录）
+     */
+    private static Map<String, PackageFileEntry> planRecords(Map<String, Source> winners) throws IOException {
+        Map<Source, Map<String, PackageFileEntry>> indexes = new IdentityHashMap<>();
+        Map<String, PackageFileEntry> records = new HashMap<>();
+        for (Map.Entry<String, Source> winner : winners.entrySet()) {
+            String path = winner.getKey();
+            Source source = winner.getValue();
+            Map<String, PackageFileEntry> index = indexes.get(source);
+            if (index == null) {
+                PackageIndex packageIndex = PackageManager.readIndex(source.zip());
+                index = packageIndex != null ? packageIndex.toPathMap() : Map.of();
+                indexes.put(source, index);
+            }
+
+            PackageFileEntry record = index.get(path);
+            if (record == null) {
+                ZipArchiveReader.Entry entry = source.zip().getEntry(path);
+                if (entry == null) {
+                    throw new IOException("Invalid package: missing content for " + path + " in " + source.path());
+                }
+                record = new PackageFileEntry(path, entry.size(), entry.crc(), null);
+            }
+            records.put(path, record);
+        }
+        return records;
+    }
+
+    /**
+     * 去重规划：内容相同（SHA-256一致）的文件由顺序在前的文件保存内容，其余文件引用它
+     * @return 内容去重的文件 -> 保存内容的条目
+     */
+    private static Map<String, String> planBlobs(Map<String, Source> winners,
+                                                 Map<String, PackageFileEntry> recordsByPath) {
+        Map<String, String> owners = new HashMap<>();
+        Map<String, String> blobs = new LinkedHashMap<>();
+        for (String path : winners.keySet()) {
+            String sha256 = recordsByPath.get(path).getSha256();
+            String owner = sha256 != null ? owners.putIfAbsent(sha256, path) : null;
+            if (owner != null) {
+                blobs.put(path, owner);
+            }
+        }
+        return blobs;
+    }
+
+    /**
+     * 按顺序原样复制条目，内容去重的文件不复制
+     */
+    private void copyEntries(ZipArchiveWriter writer, Map<String, Source> winners,
+                             Map<String, PackageFileEntry> recordsByPath, Map<String, String> blobs,
+                             List<PackageFileEntry> records) throws IOException {
+        int duplicates = 0;
+        Source lastSource = null;
+        for (Map.Entry<String, Source> winner : winners.entrySet()) {
+            String path = winner.getKey();
+            Source source = winner.getValue();
+            if (source != lastSource) {
+                lastSource = source;
+                tracker.label(new File(source.path()).getName());
+            }
+            PackageFileEntry sourceRecord = recordsByPath.get(path);
+            PackageFileEntry record = new PackageFileEntry(path, sourceRecord.getSize(),
+                    sourceRecord.getCrc(), sourceRecord.getSha256());
+            record.setMtime(sourceRecord.getMtime());
+
+            String owner = blobs.get(path);
+            if (owner != null) {
+                record.setBlob(owner);
+                duplicates++;
+            } else {
+                ZipArchiveReader.Entry entry = source.zip().getEntry(sourceRecord.getDataEntry());
+                if (entry == null) {
+                    throw new IOException("Invalid package: missing content for " + path + " in " + source.path());
+                }
+                // 数据条目可能属于内容相同的其他文件，使用文件自己的修改时间
+                writer.copyEntry(source.zip(), entry, path, record.getMtime() > 0 ? record.getMtime() : entry.time());
+            }
+            records.add(record);
+
+            // 按固定频率报告进度，避免UI更新过频
+            if (tracker.advance(1, record.getSize())) {
+                report("  Copied " + tracker.snapshot().filesDone() + " files...");
+            }
+        }
+        report(String.format("Merged %d files (%d deduplicated)", records.size(), duplicates));
+    }
+
+    private void report(String message) {
+        if (progressCallback != null) {
+            progressCallback.accept(message);
+        }
+    }
+}
@@ -8,10 +8,16 @@ import java.time.format.DateTimeFormatter;
  * 记录导出包的基本信息
  */
 public class PackageMetadata {
-    private String version = "1.0";
+    // 格式版本：1.0 每个文件单独保存（可以附带.pam/index.json，旧版本的程序也能完整导入）；
+    // 2.0 使用了去重、增量或固实等旧版本的程序无法正确导入的功能，需要index.json和清单中的记录
+    public static final String FORMAT_V1 = "1.0";
+    public static final String FORMAT_V2 = "2.0";
+
+    private String version = FORMAT_V1;
     private String createdDate;
     private String exportSource;
     private int appCount;
+    private String baseline;
 
     public PackageMetadata() {
         this.createdDate = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
@@ -50,4 +56,22 @@ public class PackageMetadata {
     public void setAppCount(int appCount) {
         this.appCount = appCount;
     }
+
+    /**
+     * 增量包所基于的基线包名称，完整包为null
+     */
+    public String getBaseline() {
+        return baseline;
+    }
+
+    public void setBaseline(String baseline) {
+        this.baseline = baseline;
+    }
+
+    /**
+     * 是否为增量包
+     */
+    public boolean isDelta() {
+        return baseline != null;
+    }
 }
@@ -0,0 +1,92 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 固实块
+ * 多个小文件按顺序拼接后作为一个ZIP条目压缩，记录在manifest.json中，
+ * 导入时（包括从流中导入）只需按顺序解压一次块，依次切分出各个文件
+ */
+public class PackageSolidBlock {
+    private String entry;
+    private List<Member> files;
+
+    /**
+     * 块中的文件（在块中的偏移量为之前所有文件的大小之和）
+     */
+    public static class Member {
+        private String path;
+        private long size;
+
+        public Member() {
+        }
+
+        public Member(String path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+    }
+
+    public PackageSolidBlock() {
+        this.files = new ArrayList<>();
+    }
+
+    public PackageSolidBlock(String entry) {
+        this();
+        this.entry = entry;
+    }
+
+    /**
+     * 保存块数据的ZIP条目
+     */
+    public String getEntry() {
+        return entry;
+    }
+
+    public void setEntry(String entry) {
+        this.entry = entry;
+    }
+
+    public List<Member> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<Member> files) {
+        this.files = files;
+    }
+
+    /**
+     * 在块末尾添加一个文件
+     */
+    public void addFile(String path, long size) {
+        files.add(new Member(path, size));
+    }
+
+    /**
+     * 块中数据的总大小
+     */
+    public long getTotalSize() {
+        long total = 0;
+        for (Member member : files) {
+            total += member.getSize();
+        }
+        return total;
+    }
+}
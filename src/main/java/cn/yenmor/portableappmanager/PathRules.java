@@ -0,0 +1,178 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 导出排除规则
+ * 规则为相对应用目录的glob（不区分大小写）：
+ * "*" 匹配一级路径中的任意字符，"?" 匹配单个字符，"**" 匹配任意多级目录；
+ * 不含 "/" 的规则匹配任意层级中的名称（例如 "*.log"、"cache"），含 "/" 的规则从应用目录开始匹配；
+ * 以 "/" 结尾的规则只匹配目录，"#" 开头的行为注释。
+ * 包含规则优先于排除规则，但与gitignore相同，被排除的目录不会再进入，其中的文件无法重新包含。
+ * 不含通配符的规则放入哈希表，其余规则合并为一个正则表达式，每个路径只匹配一次
+ */
+final class PathRules {
+    static final PathRules NONE = new PathRules(new RuleSet(List.of()), new RuleSet(List.of()));
+
+    private final RuleSet excludes;
+    private final RuleSet includes;
+
+    private PathRules(RuleSet excludes, RuleSet includes) {
+        this.excludes = excludes;
+        this.includes = includes;
+    }
+
+    /**
+     * 编译规则
+     * @param excludes 排除规则，可为null
+     * @param includes 包含规则（排除规则的例外），可为null
+     */
+    static PathRules compile(List<String> excludes, List<String> includes) {
+        if (excludes == null || excludes.isEmpty()) {
+            return NONE;
+        }
+        return new PathRules(new RuleSet(excludes), new RuleSet(includes != null ? includes : List.of()));
+    }
+
+    /**
+     * 是否没有任何排除规则
+     */
+    boolean isEmpty() {
+        return excludes.isEmpty();
+    }
+
+    /**
+     * 判断路径是否被排除
+     * @param relativePath 相对应用目录的路径，以 "/" 分隔，目录不带结尾的 "/"
+     * @param directory 是否为目录
+     */
+    boolean excludes(String relativePath, boolean directory) {
+        if (excludes.isEmpty()) {
+            return false;
+        }
+        String path = relativePath.toLowerCase(Locale.ROOT);
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return excludes.matches(path, name, directory) && !includes.matches(path, name, directory);
+    }
+
+    /**
+     * 判断路径或其所在的某一级目录是否被排除（用于没有遍历过程的路径，例如基线包中的文件）
+     * @param relativePath 文件相对应用目录的路径
+     */
+    boolean excludesFileOrParent(String relativePath) {
+        if (excludes.isEmpty()) {
+            return false;
+        }
+        for (int i = relativePath.indexOf('/'); i >= 0; i = relativePath.indexOf('/', i + 1)) {
+            if (excludes(relativePath.substring(0, i), true)) {
+                return true;
+            }
+        }
+        return excludes(relativePath, false);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 一组编译后的规则：文件和目录都适用的规则，以及只适用于目录的规则
+     */
+    private static final class RuleSet {
+        private final Set<String> names = new HashSet<>();
+        private final Set<String> paths = new HashSet<>();
+        private final Set<String> dirNames = new HashSet<>();
+        private final Set<String> dirPaths = new HashSet<>();
+        private final Pattern pattern;
+        private final Pattern dirPattern;
+        private final boolean empty;
+
+        private RuleSet(List<String> rules) {
+            List<String> regexes = new ArrayList<>();
+            List<String> dirRegexes = new ArrayList<>();
+            int count = 0;
+            for (String raw : rules) {
+                String rule = raw == null ? "" : raw.trim().replace('\\', '/').toLowerCase(Locale.ROOT);
+                if (rule.isEmpty() || rule.startsWith("#")) {
+                    continue;
+                }
+                boolean dirOnly = rule.endsWith("/");
+                boolean leadingSlash = rule.startsWith("/");
+                rule = trimSlashes(rule);
+                if (rule.isEmpty()) {
+                    continue;
+                }
+                // 以 "/" 开头或中间含有 "/" 的规则从应用目录开始匹配
+                boolean anchored = leadingSlash || rule.contains("/");
+                count++;
+
+                if (rule.indexOf('*') < 0 && rule.indexOf('?') < 0) {
+                    (anchored ? (dirOnly ? dirPaths : paths) : (dirOnly ? dirNames : names)).add(rule);
+                } else {
+                    String regex = "(?:" + (anchored ? "" : "(?:.*/)?") + globToRegex(rule) + ")";
+                    (dirOnly ? dirRegexes : regexes).add(regex);
+                }
+            }
+            this.empty = count == 0;
+            this.pattern = regexes.isEmpty() ? null : Pattern.compile(String.join("|", regexes), Pattern.DOTALL);
+            this.dirPattern = dirRegexes.isEmpty() ? null : Pattern.compile(String.join("|", dirRegexes), Pattern.DOTALL);
+        }
+
+        private boolean isEmpty() {
+            return empty;
+        }
+
+        private boolean matches(String path, String name, boolean directory) {
+            if (empty) {
+                return false;
+            }
+            if (names.contains(name) || paths.contains(path)
+                    || (pattern != null && pattern.matcher(path).matches())) {
+                return true;
+            }
+            return directory && (dirNames.contains(name) || dirPaths.contains(path)
+                    || (dirPattern != null && dirPattern.matcher(path).matches()));
+        }
+
+        private static String trimSlashes(String rule) {
+            int start = 0;
+            int end = rule.length();
+            while (start < end && rule.charAt(start) == '/') {
+                start++;
+            }
+            while (end > start && rule.charAt(end - 1) == '/') {
+                end--;
+            }
+            return rule.substring(start, end);
+        }
+
+        /**
+         * 将glob转换为正则表达式
+         */
+        private static String globToRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int length = glob.length();
+            for (int i = 0; i < length; i++) {
+                char c = glob.charAt(i);
+                if (c == '*' && i + 1 < length && glob.charAt(i + 1) == '*') {
+                    i++;
+                    if (i + 1 < length && glob.charAt(i + 1) == '/') {
+                        // "**/" 匹配零或多级目录
+                        i++;
+                        regex.append("(?:.*/)?");
+                    } else {
+                        regex.append(".*");
+                    }
+                } else if (c == '*') {
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+                    regex.append('\\').append(c);
+                } else {
+                    regex.append(c);
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
@@ -19,8 +19,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static cn.yenmor.portableappmanager.ConstVars.*;
@@ -35,6 +37,12 @@ public class PortableAppManager extends Application {
         launch(args);
     }
 
+    @Override
+    public void stop() {
+        // 写入尚未保存的配置
+        ConfigManager.flush();
+    }
+
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("Portable App Manager");
@@ -84,6 +92,7 @@ public class PortableAppManager extends Application {
         Button exportPackageButton = new Button("📦 Export Package");
         Button importPackageButton = new Button("📥 Import Package");
         Button mergePackagesButton = new Button("🔀 Merge Packages");
+        Button verifyAppsButton = new Button("🩺 Verify");
 
         // 设置按钮样式类
         addButton.getStyleClass().add("primary-button");
@@ -96,6 +105,7 @@ public class PortableAppManager extends Application {
         exportPackageButton.getStyleClass().add("success-button");
         importPackageButton.getStyleClass().add("primary-button");
         mergePackagesButton.getStyleClass().add("info-button");
+        verifyAppsButton.getStyleClass().add("info-button");
 
         // 按钮事件
         addButton.setOnAction(e -> addApplication(primaryStage));
@@ -107,12 +117,13 @@ public class PortableAppManager extends Application {
         exportPackageButton.setOnAction(e -> exportApplicationPackage(primaryStage));
         importPackageButton.setOnAction(e -> importApplicationPackage(primaryStage));
         mergePackagesButton.setOnAction(e -> mergeApplicationPackages(primaryStage));
+        verifyAppsButton.setOnAction(e -> verifyInstalledApps(primaryStage));
 
         // 添加按钮到行
         buttonRow1.getChildren().addAll(addButton, deleteButton, refreshButton);
         buttonRow2.getChildren().addAll(exportButton, exportToStartMenuButton);
         buttonRow3.getChildren().addAll(openInksFolderButton, openStartMenuButton);
-        buttonRow4.getChildren().addAll(exportPackageButton, importPackageButton, mergePackagesButton);
+        buttonRow4.getChildren().addAll(exportPackageButton, importPackageButton, mergePackagesButton, verifyAppsButton);
 
         // ListView - 使用 AppEntry 类型
         appListView = new ListView<>();
@@ -456,21 +467,18 @@ public class PortableAppManager extends Application {
         }
 
         // 显示进度并执行导出
-        Task<Boolean> exportTask = new Task<Boolean>() {
+        Task<Boolean> exportTask = new ProgressTask<Boolean>() {
             @Override
             protected Boolean call() throws Exception {
                 updateMessage("Preparing export...");
 
+                ExportOptions exportOptions = new ExportOptions();
+                exportOptions.setProgressListener(this::updateProgress);
                 return PackageManager.exportApps(
                     selectedApps,
                     zipFile.getAbsolutePath(),
-                    msg -> {
-                        updateMessage(msg);
-                        // 如果是finalizing阶段，添加提示
-                        if (msg.contains("Finalizing")) {
-                            updateMessage("Finalizing package... (This may take a moment for large packages)");
-                        }
-                    }
+                    null,
+                    exportOptions
                 );
             }
         };
@@ -513,12 +521,25 @@ public class PortableAppManager extends Application {
             return;
         }
 
+        // 选择要导入的应用（包中有多个应用时）
+        ImportOptions importOptions = new ImportOptions();
+        List<AppEntry> selectedApps = preview.getAppEntries();
+        if (selectedApps.size() > 1) {
+            Set<String> selectedIds = showAppSelectionDialog(preview);
+            if (selectedIds == null || selectedIds.isEmpty()) {
+                return; // 用户取消
+            }
+            importOptions.setAppIds(selectedIds);
+            selectedApps = selectedApps.stream()
+                .filter(app -> selectedIds.contains(app.getId()))
+                .collect(Collectors.toList());
+        }
+
         // 检查重复
-        List<AppEntry> currentApps = ConfigManager.loadApps();
-        List<String> duplicateNames = preview.getAppEntries().stream()
+        AppIndex index = ConfigManager.getIndex();
+        List<String> duplicateNames = selectedApps.stream()
             .map(AppEntry::getName)
-            .filter(name -> currentApps.stream()
-                .anyMatch(existing -> existing.getName().equalsIgnoreCase(name)))
+            .filter(index::containsName)
             .collect(Collectors.toList());
 
         // 确定导入策略（必须是 effectively final）
@@ -532,16 +553,21 @@ public class PortableAppManager extends Application {
         } else {
             strategy = ImportStrategy.RENAME;
         }
+        // 替换已安装的应用时，只写入有变化的文件
+        importOptions.setSkipUnchanged(strategy == ImportStrategy.REPLACE);
 
         // 执行导入
-        Task<List<AppEntry>> importTask = new Task<List<AppEntry>>() {
+        Task<List<AppEntry>> importTask = new ProgressTask<List<AppEntry>>() {
             @Override
             protected List<AppEntry> call() throws Exception {
                 updateMessage("Importing package...");
+                importOptions.setProgressListener(this::updateProgress);
                 return PackageManager.importPackage(
                     zipFile.getAbsolutePath(),
                     System.getProperty("user.dir"),
-                    strategy
+                    strategy,
+                    importOptions,
+                    null
                 );
             }
         };
@@ -595,7 +621,7 @@ public class PortableAppManager extends Application {
         }
 
         // 执行合并
-        Task<List<AppEntry>> mergeTask = new Task<List<AppEntry>>() {
+        Task<List<AppEntry>> mergeTask = new ProgressTask<List<AppEntry>>() {
             @Override
             protected List<AppEntry> call() throws Exception {
                 updateMessage("Merging packages...");
@@ -604,7 +630,10 @@ public class PortableAppManager extends Application {
                     .map(File::getAbsolutePath)
                     .collect(Collectors.toList());
 
-                return PackageManager.mergePackages(paths, System.getProperty("user.dir"));
+                ImportOptions mergeOptions = new ImportOptions();
+                mergeOptions.setProgressListener(this::updateProgress);
+                return PackageManager.mergePackages(paths, System.getProperty("user.dir"),
+                    mergeOptions, null);
             }
         };
 
@@ -627,6 +656,70 @@ public class PortableAppManager extends Application {
         new Thread(mergeTask).start();
     }
 
+    // 检查应用的安装是否完整（未选择时检查全部应用）
+    private void verifyInstalledApps(Stage primaryStage) {
+        List<AppEntry> apps = new ArrayList<>(appListView.getSelectionModel().getSelectedItems());
+        if (apps.isEmpty()) {
+            apps = new ArrayList<>(appListView.getItems());
+        }
+        if (apps.isEmpty()) {
+            showAlert("No Applications", "There are no applications to verify.");
+            return;
+        }
+
+        List<AppEntry> targetApps = apps;
+        Task<List<VerifyReport>> verifyTask = new ProgressTask<List<VerifyReport>>() {
+            @Override
+            protected List<VerifyReport> call() throws Exception {
+                updateMessage("Verifying applications...");
+                return PackageManager.verifyApps(targetApps, System.getProperty("user.dir"),
+                    VerifyMode.FULL, this::updateProgress);
+            }
+        };
+
+        showProgressDialog(primaryStage, verifyTask, "Verifying Applications",
+            () -> {
+                List<VerifyReport> reports = verifyTask.getValue();
+                List<VerifyReport> problems = reports.stream()
+                    .filter(report -> !report.isIntact() || !report.hasManifest() || !report.getExtraFiles().isEmpty())
+                    .collect(Collectors.toList());
+                if (problems.isEmpty()) {
+                    showAlert("Verify Complete",
+                        String.format("All %d application(s) are intact.", reports.size()));
+                    return;
+                }
+
+                StringBuilder details = new StringBuilder();
+                for (VerifyReport report : problems) {
+                    details.append(report).append('\n');
+                    appendFiles(details, "Missing", report.getMissingFiles());
+                    appendFiles(details, "Corrupt", report.getCorruptFiles());
+                    appendFiles(details, "Extra", report.getExtraFiles());
+                }
+                long broken = problems.stream().filter(report -> !report.isIntact()).count();
+                showAlert("Verify Complete",
+                    String.format("%d of %d application(s) have missing or corrupt files.\n\n%s",
+                        broken, reports.size(), details));
+            },
+            () -> {
+                showAlert("Verify Error", "Error during verification: " +
+                         verifyTask.getException().getMessage());
+            }
+        );
+
+        new Thread(verifyTask).start();
+    }
+
+    // 列出检查结果中的文件（最多显示5个）
+    private void appendFiles(StringBuilder details, String label, List<String> files) {
+        for (int i = 0; i < Math.min(files.size(), 5); i++) {
+            details.append("  ").append(label).append(": ").append(files.get(i)).append('\n');
+        }
+        if (files.size() > 5) {
+            details.append(String.format("  ... and %d more%n", files.size() - 5));
+        }
+    }
+
     // 显示进度对话框
     private void showProgressDialog(Stage owner, Task<?> task, String title,
                                      Runnable onSuccess, Runnable onFailure) {
@@ -646,7 +739,7 @@ public class PortableAppManager extends Application {
         VBox vbox = new VBox(10, progressBar, statusLabel);
         vbox.setStyle("-fx-padding: 20px;");
 
-        progressStage.setScene(new Scene(vbox, 320, 100));
+        progressStage.setScene(new Scene(vbox, 340, 120));
         progressStage.setResizable(false);
         progressStage.show();
 
@@ -665,6 +758,51 @@ public class PortableAppManager extends Application {
         });
     }
 
+    // 接收导入导出进度事件的后台任务，事件已按固定频率合并，进度条和状态文字直接随事件更新
+    private abstract static class ProgressTask<V> extends Task<V> {
+        protected void updateProgress(ProgressEvent event) {
+            // 总量未知时fraction为-1，进度条显示为不确定状态
+            updateProgress(event.fraction(), 1);
+            updateMessage(event.describe());
+        }
+    }
+
+    // 显示应用选择对话框（默认全选），返回选中的应用ID，取消时返回null
+    private Set<String> showAppSelectionDialog(PackageEntry preview) {
+        ListView<AppEntry> listView = new ListView<>(FXCollections.observableArrayList(preview.getAppEntries()));
+        listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        listView.getSelectionModel().selectAll();
+        listView.setPrefHeight(200);
+        listView.setCellFactory(param -> new ListCell<>() {
+            @Override
+            protected void updateItem(AppEntry app, boolean empty) {
+                super.updateItem(app, empty);
+                if (empty || app == null) {
+                    setText(null);
+                    return;
+                }
+                PackageAppContent content = preview.getAppContent(app.getId());
+                setText(content != null
+                    ? String.format("%s (%.1f MB)", app.getName(), content.getTotalSize() / 1048576.0)
+                    : app.getName());
+            }
+        });
+
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Select Applications");
+        alert.setHeaderText("Select the applications to import:");
+        alert.getDialogPane().setContent(listView);
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isEmpty() || result.get() != ButtonType.OK) {
+            return null;
+        }
+
+        return listView.getSelectionModel().getSelectedItems().stream()
+            .map(AppEntry::getId)
+            .collect(Collectors.toSet());
+    }
+
     // 显示重复应用解决对话框
     private ImportStrategy showDuplicateResolutionDialog(List<String> duplicates) {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
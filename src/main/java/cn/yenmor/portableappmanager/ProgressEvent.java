@@ -0,0 +1,101 @@
+package cn.yenmor.portableappmanager;
+
+/**
+ * 导入导出进度事件
+ * 包含当前阶段、文件数和字节数的完成情况、吞吐量以及预计剩余时间
+ * @param phase 当前阶段
+ * @param label 当前处理的对象（例如正在导出的应用），可为null
+ * @param filesDone 已处理的文件数
+ * @param filesTotal 文件总数
+ * @param bytesDone 已处理的字节数（未压缩）
+ * @param bytesTotal 字节总数
+ * @param bytesPerSecond 平均吞吐量
+ * @param etaMillis 预计剩余时间（毫秒），无法估计时为-1
+ */
+public record ProgressEvent(Phase phase, String label, long filesDone, long filesTotal,
+                            long bytesDone, long bytesTotal, double bytesPerSecond, long etaMillis) {
+
+    /**
+     * 进度阶段
+     */
+    public enum Phase {
+        /**
+         * 准备中（扫描目录、读取包清单）
+         */
+        PREPARING,
+
+        /**
+         * 压缩并写入文件（合并为新包时为复制条目）
+         */
+        EXPORTING,
+
+        /**
+         * 解压文件
+         */
+        EXTRACTING,
+
+        /**
+         * 检查已安装的文件
+         */
+        VERIFYING,
+
+        /**
+         * 写入索引、保存配置等收尾工作
+         */
+        FINALIZING,
+
+        /**
+         * 已完成
+         */
+        DONE
+    }
+
+    /**
+     * 完成比例（0-1），优先按字节数计算；总量未知时返回-1（不确定进度）
+     */
+    public double fraction() {
+        if (phase == Phase.DONE) {
+            return 1;
+        }
+        if (bytesTotal > 0) {
+            return Math.min(1, (double) bytesDone / bytesTotal);
+        }
+        if (filesTotal > 0) {
+            return Math.min(1, (double) filesDone / filesTotal);
+        }
+        return -1;
+    }
+
+    /**
+     * 生成适合在界面上显示的进度描述
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder(switch (phase) {
+            case PREPARING -> "Preparing...";
+            case EXPORTING -> "Exporting";
+            case EXTRACTING -> "Extracting";
+            case VERIFYING -> "Verifying";
+            case FINALIZING -> "Finalizing... (This may take a moment for large packages)";
+            case DONE -> "Done";
+        });
+        if (phase != Phase.EXPORTING && phase != Phase.EXTRACTING && phase != Phase.VERIFYING) {
+            return text.toString();
+        }
+
+        if (label != null) {
+            text.append(' ').append(label);
+        }
+        text.append(String.format("%n%d/%d files, %.1f/%.1f MB", filesDone, filesTotal,
+                bytesDone / 1048576.0, bytesTotal / 1048576.0));
+        if (bytesPerSecond > 0) {
+            text.append(String.format(", %.1f MB/s", bytesPerSecond / 1048576.0));
+        }
+        if (etaMillis >= 0) {
+            long seconds = (etaMillis + 999) / 1000;
+            text.append(seconds >= 60
+                    ? String.format(", %d min %d s left", seconds / 60, seconds % 60)
+                    : String.format(", %d s left", seconds));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 进度统计
+ * 工作线程只累加计数器；进度事件按固定频率合并发送（阶段变化时立即发送），
+ * 处理大量小文件时也不会频繁更新界面
+ */
+final class ProgressTracker {
+    /**
+     * 两次进度事件之间的最小间隔（约每秒15次）
+     */
+    static final long INTERVAL_NANOS = 1_000_000_000L / 15;
+
+    private final Consumer<ProgressEvent> listener;
+    private final AtomicLong filesDone = new AtomicLong();
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong nextTick = new AtomicLong();
+    private volatile ProgressEvent.Phase phase = ProgressEvent.Phase.PREPARING;
+    private volatile String label;
+    private volatile long filesTotal;
+    private volatile long bytesTotal;
+    private volatile long startTime = System.nanoTime();
+
+    /**
+     * @param listener 进度监听器，可为null（此时只用于控制文字进度的报告频率）
+     */
+    ProgressTracker(Consumer<ProgressEvent> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 开始新的阶段，重新计数
+     * @param phase 阶段
+     * @param filesTotal 文件总数
+     * @param bytesTotal 字节总数
+     */
+    void start(ProgressEvent.Phase phase, long filesTotal, long bytesTotal) {
+        this.filesTotal = filesTotal;
+        this.bytesTotal = bytesTotal;
+        filesDone.set(0);
+        bytesDone.set(0);
+        startTime = System.nanoTime();
+        label = null;
+        enter(phase);
+    }
+
+    /**
+     * 进入新的阶段（保留计数），立即发送进度事件
+     */
+    void enter(ProgressEvent.Phase phase) {
+        this.phase = phase;
+        nextTick.set(System.nanoTime() + INTERVAL_NANOS);
+        emit();
+    }
+
+    /**
+     * 设置当前处理的对象
+     */
+    void label(String label) {
+        this.label = label;
+    }
+
+    /**
+     * 累加已处理的文件数和字节数
+     * @return 是否到达报告时间（已发送进度事件）
+     */
+    boolean advance(long files, long bytes) {
+        filesDone.addAndGet(files);
+        bytesDone.addAndGet(bytes);
+
+        long now = System.nanoTime();
+        long next = nextTick.get();
+        // 同一时间段内只有一个线程发送事件
+        if (now - next < 0 || !nextTick.compareAndSet(next, now + INTERVAL_NANOS)) {
+            return false;
+        }
+        emit();
+        return true;
+    }
+
+    /**
+     * 当前进度
+     */
+    ProgressEvent snapshot() {
+        long files = filesDone.get();
+        long bytes = bytesDone.get();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        double rate = seconds > 0.001 ? bytes / seconds : 0;
+        // 刚开始时吞吐量还不稳定，不估计剩余时间
+        long eta = seconds >= 1 && rate > 0 && bytesTotal > 0
+                ? (long) (Math.max(0, bytesTotal - bytes) / rate * 1000) : -1;
+        return new ProgressEvent(phase, label, files, filesTotal, bytes, bytesTotal, rate, eta);
+    }
+
+    private void emit() {
+        if (listener != null) {
+            listener.accept(snapshot());
+        }
+    }
+}
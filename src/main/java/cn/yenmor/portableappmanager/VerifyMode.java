@@ -0,0 +1,24 @@
+package cn.yenmor.portableappmanager;
+
+/**
+ * 导入校验模式枚举
+ * 定义解压时如何校验写入的文件内容
+ */
+public enum VerifyMode {
+    /**
+     * 不校验
+     */
+    NONE,
+
+    /**
+     * 快速校验
+     * 写入时计算CRC32，与ZIP条目记录的CRC比较
+     */
+    FAST,
+
+    /**
+     * 完整校验
+     * 写入时同时计算SHA-256，与包中index.json记录的哈希比较（旧版本的包没有哈希时只比较CRC）
+     */
+    FULL
+}
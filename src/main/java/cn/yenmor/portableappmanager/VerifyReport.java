@@ -0,0 +1,69 @@
+package cn.yenmor.portableappmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个应用的安装检查结果
+ * 列出缺失、内容损坏和清单之外的多余文件（路径与包内路径相同）
+ */
+public class VerifyReport {
+    private final AppEntry app;
+    private final boolean hasManifest;
+    private final List<String> missingFiles = new ArrayList<>();
+    private final List<String> corruptFiles = new ArrayList<>();
+    private final List<String> extraFiles = new ArrayList<>();
+    private int checkedFiles;
+
+    public VerifyReport(AppEntry app, boolean hasManifest) {
+        this.app = app;
+        this.hasManifest = hasManifest;
+    }
+
+    public AppEntry getApp() {
+        return app;
+    }
+
+    /**
+     * 是否有安装清单（没有清单的应用只检查主程序是否存在）
+     */
+    public boolean hasManifest() {
+        return hasManifest;
+    }
+
+    public List<String> getMissingFiles() {
+        return missingFiles;
+    }
+
+    public List<String> getCorruptFiles() {
+        return corruptFiles;
+    }
+
+    public List<String> getExtraFiles() {
+        return extraFiles;
+    }
+
+    public int getCheckedFiles() {
+        return checkedFiles;
+    }
+
+    void setCheckedFiles(int checkedFiles) {
+        this.checkedFiles = checkedFiles;
+    }
+
+    /**
+     * 是否完整（没有缺失和损坏的文件，多余文件不影响）
+     */
+    public boolean isIntact() {
+        return missingFiles.isEmpty() && corruptFiles.isEmpty() && (hasManifest || app.exists());
+    }
+
+    @Override
+    public String toString() {
+        if (!hasManifest) {
+            return String.format("%s: no install manifest%s", app.getName(), app.exists() ? "" : ", executable missing");
+        }
+        return String.format("%s: %d files checked, %d missing, %d corrupt, %d extra",
+                app.getName(), checkedFiles, missingFiles.size(), corruptFiles.size(), extraFiles.size());
+    }
+}
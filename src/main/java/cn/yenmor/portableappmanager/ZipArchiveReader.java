@@ -0,0 +1,405 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * ZIP归档读取器
+ * 通过FileChannel直接解析中央目录（支持ZIP64），可按名称随机访问任意条目，
+ * 无需顺序扫描整个文件；按位置读取，可被多个线程同时使用。
+ * 存储条目可通过transferTo直接复制到目标通道，压缩条目使用池化的Inflater和直接缓冲区解压
+ */
+class ZipArchiveReader implements Closeable {
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private final FileChannel channel;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName;
+
+    /**
+     * ZIP条目（来自中央目录）
+     */
+    record Entry(String name, int method, long time, long crc,
+                 long compressedSize, long size, long localHeaderOffset) {
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private ZipArchiveReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.entries = Collections.unmodifiableList(readCentralDirectory());
+        this.entriesByName = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            entriesByName.putIfAbsent(entry.name(), entry);
+        }
+    }
+
+    /**
+     * 打开ZIP文件并读取中央目录
+     */
+    static ZipArchiveReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ZipArchiveReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 所有条目（按中央目录顺序，即写入顺序）
+     */
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * 按名称查找条目
+     * @return 条目，不存在时返回null
+     */
+    Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * 打开条目的解压数据流
+     */
+    InputStream getInputStream(Entry entry) throws IOException {
+        long dataOffset = dataOffset(entry);
+        if (entry.method() == ZipEntry.STORED) {
+            return new RegionInputStream(channel, dataOffset, entry.compressedSize(), false);
+        }
+        if (entry.method() != ZipEntry.DEFLATED) {
+            throw new ZipException("unsupported compression method " + entry.method() + ": " + entry.name());
+        }
+
+        Inflater inflater = ZipCodecPool.acquireInflater();
+        return new InflaterInputStream(new RegionInputStream(channel, dataOffset, entry.compressedSize(), true),
+                inflater, 8192) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    super.close();
+                    ZipCodecPool.releaseInflater(inflater);
+                }
+            }
+        };
+    }
+
+    /**
+     * 将条目解压后的数据写入目标通道
+     * @return 写入的字节数
+     */
+    long copyTo(Entry entry, WritableByteChannel target) throws IOException {
+        if (entry.method() == ZipEntry.STORED) {
+            return copyRawTo(entry, target);
+        }
+        if (entry.method() != ZipEntry.DEFLATED) {
+            throw new ZipException("unsupported compression method " + entry.method() + ": " + entry.name());
+        }
+
+        long position = dataOffset(entry);
+        long remaining = entry.compressedSize();
+        boolean padded = false;
+        long written = 0;
+        Inflater inflater = ZipCodecPool.acquireInflater();
+        ByteBuffer input = ZipCodecPool.acquireBuffer();
+        ByteBuffer output = ZipCodecPool.acquireBuffer();
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    input.clear();
+                    if (remaining > 0) {
+                        input.limit((int) Math.min(input.capacity(), remaining));
+                        int read = channel.read(input, position);
+                        if (read < 0) {
+                            throw new EOFException("Unexpected end of zip entry");
+                        }
+                        position += read;
+                        remaining -= read;
+                    } else if (!padded) {
+                        // 使用nowrap模式的Inflater在数据末尾需要一个额外的填充字节
+                        padded = true;
+                        input.put((byte) 0);
+                    } else {
+                        throw new ZipException("truncated entry data: " + entry.name());
+                    }
+                    inflater.setInput(input.flip());
+                }
+
+                output.clear();
+                written += inflater.inflate(output);
+                output.flip();
+                while (output.hasRemaining()) {
+                    target.write(output);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("invalid entry data: " + entry.name() + " (" + e.getMessage() + ")");
+        } finally {
+            ZipCodecPool.releaseBuffer(input);
+            ZipCodecPool.releaseBuffer(output);
+            ZipCodecPool.releaseInflater(inflater);
+        }
+
+        if (written != entry.size()) {
+            throw new ZipException("invalid entry size: " + entry.name());
+        }
+        return written;
+    }
+
+    /**
+     * 将条目的原始数据（压缩条目为压缩后的数据）通过transferTo直接复制到目标通道
+     * @return 写入的字节数
+     */
+    long copyRawTo(Entry entry, WritableByteChannel target) throws IOException {
+        long position = dataOffset(entry);
+        long count = entry.compressedSize();
+        long done = 0;
+        while (done < count) {
+            long transferred = channel.transferTo(position + done, count - done, target);
+            if (transferred <= 0 && position + done >= channel.size()) {
+                throw new EOFException("Unexpected end of zip entry");
+            }
+            done += transferred;
+        }
+        return count;
+    }
+
+    /**
+     * 读取本地文件头，计算条目数据在文件中的起始位置
+     */
+    long dataOffset(Entry entry) throws IOException {
+        ByteBuffer header = readFully(entry.localHeaderOffset(), 30);
+        if (header.getInt(0) != LOCAL_HEADER_SIG) {
+            throw new ZipException("invalid local header: " + entry.name());
+        }
+        int nameLength = Short.toUnsignedInt(header.getShort(26));
+        int extraLength = Short.toUnsignedInt(header.getShort(28));
+        return entry.localHeaderOffset() + 30 + nameLength + extraLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 定位结束记录并读取中央目录
+     */
+    private List<Entry> readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < END_SIZE) {
+            throw new ZipException("zip file is empty or too short");
+        }
+
+        // 从文件尾部向前查找结束记录（结束记录后可能有最长64KB的注释）
+        int tailLength = (int) Math.min(fileSize, END_SIZE + MAX_COMMENT);
+        long tailOffset = fileSize - tailLength;
+        ByteBuffer tail = readFully(tailOffset, tailLength);
+        int endPos = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG
+                    && i + END_SIZE + Short.toUnsignedInt(tail.getShort(i + 20)) == tailLength) {
+                endPos = i;
+                break;
+            }
+        }
+        if (endPos < 0) {
+            throw new ZipException("zip END header not found");
+        }
+
+        long count = Short.toUnsignedInt(tail.getShort(endPos + 10));
+        long centralSize = Integer.toUnsignedLong(tail.getInt(endPos + 12));
+        long centralOffset = Integer.toUnsignedLong(tail.getInt(endPos + 16));
+
+        // ZIP64：结束记录之前紧挨着ZIP64定位器
+        long endOffset = tailOffset + endPos;
+        if (endOffset >= 20) {
+            ByteBuffer locator = readFully(endOffset - 20, 20);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIG) {
+                ByteBuffer end64 = readFully(locator.getLong(8), 56);
+                if (end64.getInt(0) != ZIP64_END_SIG) {
+                    throw new ZipException("invalid ZIP64 END header");
+                }
+                count = end64.getLong(32);
+                centralSize = end64.getLong(40);
+                centralOffset = end64.getLong(48);
+            }
+        }
+
+        if (centralSize > Integer.MAX_VALUE || centralOffset + centralSize > fileSize) {
+            throw new ZipException("invalid central directory");
+        }
+
+        ByteBuffer central = readFully(centralOffset, (int) centralSize);
+        List<Entry> result = new ArrayList<>((int) Math.min(count, 1 << 20));
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (pos + 46 > central.limit() || central.getInt(pos) != CENTRAL_HEADER_SIG) {
+                throw new ZipException("invalid central directory header");
+            }
+            int method = Short.toUnsignedInt(central.getShort(pos + 10));
+            long dosTime = Integer.toUnsignedLong(central.getInt(pos + 12));
+            long crc = Integer.toUnsignedLong(central.getInt(pos + 16));
+            long compressedSize = Integer.toUnsignedLong(central.getInt(pos + 20));
+            long size = Integer.toUnsignedLong(central.getInt(pos + 24));
+            int nameLength = Short.toUnsignedInt(central.getShort(pos + 28));
+            int extraLength = Short.toUnsignedInt(central.getShort(pos + 30));
+            int commentLength = Short.toUnsignedInt(central.getShort(pos + 32));
+            long localHeaderOffset = Integer.toUnsignedLong(central.getInt(pos + 42));
+
+            byte[] nameBytes = new byte[nameLength];
+            central.get(pos + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // 解析ZIP64扩展字段（只包含值为0xFFFFFFFF的字段）
+            int extraPos = pos + 46 + nameLength;
+            int extraEnd = extraPos + extraLength;
+            while (extraPos + 4 <= extraEnd) {
+                int id = Short.toUnsignedInt(central.getShort(extraPos));
+                int length = Short.toUnsignedInt(central.getShort(extraPos + 2));
+                if (id == ZIP64_EXTRA_ID) {
+                    int fieldPos = extraPos + 4;
+                    if (size == ZIP64_MAGIC) {
+                        size = central.getLong(fieldPos);
+                        fieldPos += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC) {
+                        compressedSize = central.getLong(fieldPos);
+                        fieldPos += 8;
+                    }
+                    if (localHeaderOffset == ZIP64_MAGIC) {
+                        localHeaderOffset = central.getLong(fieldPos);
+                    }
+                    break;
+                }
+                extraPos += 4 + length;
+            }
+
+            result.add(new Entry(name, method, dosToJavaTime(dosTime), crc,
+                    compressedSize, size, localHeaderOffset));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+
+        return result;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * 将MS-DOS格式的时间转换为Java时间
+     */
+    private static long dosToJavaTime(long dosTime) {
+        try {
+            LocalDateTime dateTime = LocalDateTime.of(
+                    (int) ((dosTime >> 25) & 0x7f) + 1980,
+                    (int) ((dosTime >> 21) & 0x0f),
+                    (int) ((dosTime >> 16) & 0x1f),
+                    (int) ((dosTime >> 11) & 0x1f),
+                    (int) ((dosTime >> 5) & 0x3f),
+                    (int) ((dosTime << 1) & 0x3e));
+            return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 读取文件中一段区域的输入流（使用按位置读取，不影响通道的共享位置）
+     */
+    private static final class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+        private boolean padding;
+
+        private RegionInputStream(FileChannel channel, long position, long length, boolean padding) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+            this.padding = padding;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                // 使用nowrap模式的Inflater在数据末尾需要一个额外的填充字节
+                if (padding) {
+                    padding = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip entry");
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package cn.yenmor.portableappmanager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * ZIP归档写入器
+ * 直接写入调用方预先压缩好的条目数据（CRC和大小由调用方提供），
+ * 使多个线程并行压缩的结果可以按顺序拼接成一个标准ZIP文件（支持ZIP64）。
+ * 文件头和小块数据先汇集到直接缓冲区再写出，大块文件数据通过transferTo直接传输
+ */
+class ZipArchiveWriter implements Closeable {
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(ZipCodecPool.BUFFER_SIZE);
+    private final List<CentralRecord> records = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private long offset;
+    private long remaining;
+    private boolean finished;
+
+    /**
+     * 中央目录记录
+     */
+    private record CentralRecord(byte[] name, int method, long dosTime, long crc,
+                                 long compressedSize, long size, long localHeaderOffset) {
+    }
+
+    ZipArchiveWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 开始一个新条目并写入本地文件头
+     * 随后调用方必须通过write方法写入恰好compressedSize字节的数据
+     * @param name 条目名称
+     * @param method 压缩方式（ZipEntry.STORED 或 ZipEntry.DEFLATED）
+     * @param time 修改时间（毫秒）
+     * @param crc 未压缩数据的CRC-32
+     * @param compressedSize 压缩后大小
+     * @param size 未压缩大小
+     */
+    void putEntry(String name, int method, long time, long crc, long compressedSize, long size) throws IOException {
+        ensureOpen();
+        checkEntryComplete();
+        if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+            throw new ZipException("unsupported compression method: " + method);
+        }
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean zip64 = compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC;
+        long dosTime = javaToDosTime(time);
+
+        ByteBuffer header = newBuffer(30 + nameBytes.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER_SIG);
+        header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT));
+        header.putShort((short) FLAG_UTF8);
+        header.putShort((short) method);
+        header.putInt((int) dosTime);
+        header.putInt((int) crc);
+        header.putInt((int) (zip64 ? ZIP64_MAGIC : compressedSize));
+        header.putInt((int) (zip64 ? ZIP64_MAGIC : size));
+        header.putShort((short) nameBytes.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        header.put(nameBytes);
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(size);
+            header.putLong(compressedSize);
+        }
+
+        records.add(new CentralRecord(nameBytes, method, dosTime, crc, compressedSize, size, offset));
+        writeFully(header.flip());
+        remaining = compressedSize;
+    }
+
+    /**
+     * 写入当前条目的数据
+     */
+    void write(byte[] data, int off, int len) throws IOException {
+        write(ByteBuffer.wrap(data, off, len));
+    }
+
+    /**
+     * 写入当前条目的数据
+     */
+    void write(ByteBuffer data) throws IOException {
+        ensureOpen();
+        if (data.remaining() > remaining) {
+            throw new ZipException("entry data exceeds declared compressed size");
+        }
+        remaining -= data.remaining();
+        writeFully(data);
+    }
+
+    /**
+     * 从文件通道直接传输当前条目的数据（不经过Java堆）
+     * @param source 源文件通道
+     * @param position 数据在源文件中的起始位置
+     * @param count 字节数
+     */
+    void transferFrom(FileChannel source, long position, long count) throws IOException {
+        ensureOpen();
+        if (count > remaining) {
+            throw new ZipException("entry data exceeds declared compressed size");
+        }
+        flushBuffer();
+
+        long done = 0;
+        while (done < count) {
+            long transferred = source.transferTo(position + done, count - done, channel);
+            if (transferred <= 0 && position + done >= source.size()) {
+                throw new IOException("Source file is shorter than expected");
+            }
+            done += transferred;
+        }
+        offset += count;
+        remaining -= count;
+    }
+
+    /**
+     * 原样复制其他ZIP中的条目（直接传输压缩后的数据，不重新压缩）
+     * @param source 源ZIP
+     * @param entry 源条目
+     * @param name 新条目名称
+     * @param time 修改时间（毫秒）
+     */
+    void copyEntry(ZipArchiveReader source, ZipArchiveReader.Entry entry, String name, long time) throws IOException {
+        putEntry(name, entry.method(), time, entry.crc(), entry.compressedSize(), entry.size());
+        flushBuffer();
+        long copied = source.copyRawTo(entry, channel);
+        offset += copied;
+        remaining -= copied;
+    }
+
+    /**
+     * 写入中央目录和结束记录，完成ZIP文件
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        checkEntryComplete();
+
+        long centralOffset = offset;
+        for (CentralRecord record : records) {
+            writeCentralRecord(record);
+        }
+        long centralSize = offset - centralOffset;
+
+        boolean zip64 = records.size() >= ZIP64_MAGIC_COUNT
+                || centralOffset >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndOffset = offset;
+
+            ByteBuffer end64 = newBuffer(56 + 20);
+            end64.putInt(ZIP64_END_SIG);
+            end64.putLong(44);
+            end64.putShort((short) VERSION_ZIP64);
+            end64.putShort((short) VERSION_ZIP64);
+            end64.putInt(0);
+            end64.putInt(0);
+            end64.putLong(records.size());
+            end64.putLong(records.size());
+            end64.putLong(centralSize);
+            end64.putLong(centralOffset);
+
+            end64.putInt(ZIP64_LOCATOR_SIG);
+            end64.putInt(0);
+            end64.putLong(zip64EndOffset);
+            end64.putInt(1);
+            writeFully(end64.flip());
+        }
+
+        int count = Math.min(records.size(), ZIP64_MAGIC_COUNT);
+        ByteBuffer end = newBuffer(22);
+        end.putInt(END_SIG);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) count);
+        end.putShort((short) count);
+        end.putInt((int) Math.min(centralSize, ZIP64_MAGIC));
+        end.putInt((int) Math.min(centralOffset, ZIP64_MAGIC));
+        end.putShort((short) 0);
+        writeFully(end.flip());
+        flushBuffer();
+
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void writeCentralRecord(CentralRecord record) throws IOException {
+        boolean sizeOverflow = record.size() >= ZIP64_MAGIC;
+        boolean compressedOverflow = record.compressedSize() >= ZIP64_MAGIC;
+        boolean offsetOverflow = record.localHeaderOffset() >= ZIP64_MAGIC;
+        int extraLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+        int version = zip64 ? VERSION_ZIP64 : VERSION_DEFAULT;
+
+        ByteBuffer header = newBuffer(46 + record.name().length + (zip64 ? 4 + extraLength : 0));
+        header.putInt(CENTRAL_HEADER_SIG);
+        header.putShort((short) version);
+        header.putShort((short) version);
+        header.putShort((short) FLAG_UTF8);
+        header.putShort((short) record.method());
+        header.putInt((int) record.dosTime());
+        header.putInt((int) record.crc());
+        header.putInt((int) (compressedOverflow ? ZIP64_MAGIC : record.compressedSize()));
+        header.putInt((int) (sizeOverflow ? ZIP64_MAGIC : record.size()));
+        header.putShort((short) record.name().length);
+        header.putShort((short) (zip64 ? 4 + extraLength : 0));
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putInt((int) (offsetOverflow ? ZIP64_MAGIC : record.localHeaderOffset()));
+        header.put(record.name());
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) extraLength);
+            if (sizeOverflow) {
+                header.putLong(record.size());
+            }
+            if (compressedOverflow) {
+                header.putLong(record.compressedSize());
+            }
+            if (offsetOverflow) {
+                header.putLong(record.localHeaderOffset());
+            }
+        }
+        writeFully(header.flip());
+    }
+
+    /**
+     * 写出数据：小块数据先放入缓冲区，大块数据直接写入通道
+     */
+    private void writeFully(ByteBuffer data) throws IOException {
+        offset += data.remaining();
+        if (data.remaining() > buffer.remaining()) {
+            flushBuffer();
+        }
+        if (data.remaining() >= buffer.capacity()) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } else {
+            buffer.put(data);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void checkEntryComplete() throws ZipException {
+        if (remaining != 0) {
+            throw new ZipException("previous entry is incomplete: " + remaining + " bytes missing");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished) {
+            throw new IOException("ZIP archive already finished");
+        }
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 将Java时间转换为MS-DOS格式的时间（只能表示1980-2107年，超出范围时取最近的边界）
+     */
+    static long javaToDosTime(long time) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        int year = dateTime.getYear();
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        if (year > 2107) {
+            // 2107-12-31 23:59:58
+            return (127L << 25) | (12L << 21) | (31L << 16) | (23L << 11) | (59L << 5) | (58L >> 1);
+        }
+        return ((long) (year - 1980) << 25)
+                | ((long) dateTime.getMonthValue() << 21)
+                | ((long) dateTime.getDayOfMonth() << 16)
+                | ((long) dateTime.getHour() << 11)
+                | ((long) dateTime.getMinute() << 5)
+                | ((long) dateTime.getSecond() >> 1);
+    }
+}
@@ -0,0 +1,101 @@
+package cn.yenmor.portableappmanager;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩资源池
+ * 复用直接缓冲区以及Deflater/Inflater实例，避免导入导出大量文件时频繁分配堆内存和本地内存。
+ * 每种资源最多缓存固定数量，超出部分直接释放
+ */
+final class ZipCodecPool {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_POOLED = Math.max(8, Runtime.getRuntime().availableProcessors() * 3);
+
+    private static final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private static final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private static final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger bufferCount = new AtomicInteger();
+    private static final AtomicInteger deflaterCount = new AtomicInteger();
+    private static final AtomicInteger inflaterCount = new AtomicInteger();
+
+    private ZipCodecPool() {
+    }
+
+    /**
+     * 获取一个已清空的直接缓冲区
+     */
+    static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        bufferCount.decrementAndGet();
+        return buffer.clear();
+    }
+
+    static void releaseBuffer(ByteBuffer buffer) {
+        if (buffer != null && bufferCount.incrementAndGet() <= MAX_POOLED) {
+            buffers.offer(buffer);
+        } else if (buffer != null) {
+            bufferCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 获取一个nowrap模式（ZIP使用的原始DEFLATE格式）的Deflater
+     * @param level 压缩级别
+     */
+    static Deflater acquireDeflater(int level) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            return new Deflater(level, true);
+        }
+        deflaterCount.decrementAndGet();
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    static void releaseDeflater(Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+        if (deflaterCount.incrementAndGet() <= MAX_POOLED) {
+            deflater.reset();
+            deflaters.offer(deflater);
+        } else {
+            deflaterCount.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /**
+     * 获取一个nowrap模式的Inflater
+     */
+    static Inflater acquireInflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        inflaterCount.decrementAndGet();
+        return inflater;
+    }
+
+    static void releaseInflater(Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+        if (inflaterCount.incrementAndGet() <= MAX_POOLED) {
+            inflater.reset();
+            inflaters.offer(inflater);
+        } else {
+            inflaterCount.decrementAndGet();
+            inflater.end();
+        }
+    }
+}
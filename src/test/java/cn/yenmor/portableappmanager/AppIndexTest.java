@@ -0,0 +1,51 @@
+package cn.yenmor.portableappmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppIndexTest {
+
+    private static AppEntry app(String id, String name) {
+        return new AppEntry(id, name, name + "/" + name + ".exe", "");
+    }
+
+    @Test
+    void namesMatchLikeEqualsIgnoreCase() {
+        String[][] pairs = {
+                {"Notepad", "NOTEPAD"},
+                {"İstanbul", "istanbul"},       // 整体转小写为 "i̇stanbul"
+                {"ΟΔΟΣ", "οδοσ"},               // 整体转小写时词尾为 'ς'
+                {"Straße", "STRASSE"},          // equalsIgnoreCase不展开 'ß'
+                {"ǅemal", "ǆemal"},
+        };
+        for (String[] pair : pairs) {
+            AppIndex index = new AppIndex(List.of(app("1", pair[0])));
+            assertEquals(pair[0].equalsIgnoreCase(pair[1]), index.containsName(pair[1]),
+                    pair[0] + " / " + pair[1]);
+        }
+    }
+
+    @Test
+    void uniqueNameTreatsCaseVariantsAsDuplicates() {
+        AppIndex index = new AppIndex(List.of(app("1", "İstanbul"), app("2", "ΟΔΟΣ")));
+        assertEquals("istanbul (2)", index.uniqueName("istanbul"));
+        assertEquals("οδοσ (2)", index.uniqueName("οδοσ"));
+        assertEquals("Other", index.uniqueName("Other"));
+    }
+
+    @Test
+    void removedNameCanBeReused() {
+        AppEntry first = app("1", "Tool");
+        AppEntry second = app("2", "Tool (2)");
+        AppIndex index = new AppIndex(List.of(first, second));
+        assertEquals("TOOL (3)", index.uniqueName("TOOL"));
+
+        index.remove(second);
+        assertEquals("tool (2)", index.uniqueName("tool"));
+        assertEquals("1", index.findByName("TOOL").getId());
+        assertNull(index.findById("2"));
+    }
+}
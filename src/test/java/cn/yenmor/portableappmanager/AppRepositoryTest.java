@@ -0,0 +1,109 @@
+package cn.yenmor.portableappmanager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppRepositoryTest {
+
+    /**
+     * 在内存中保存的存储，可以让写入阻塞或失败
+     */
+    private static class MemoryStore implements ConfigStore {
+        final CountDownLatch saving = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        volatile boolean blockFirstSave;
+        volatile List<AppEntry> content = new ArrayList<>();
+        private int saves;
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public List<AppEntry> load() {
+            return new ArrayList<>(content);
+        }
+
+        @Override
+        public void save(List<AppEntry> saved, List<AppEntry> apps) throws IOException {
+            if (failures.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+                throw new IOException("disk full");
+            }
+            if (blockFirstSave && saves++ == 0) {
+                saving.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            content = new ArrayList<>(apps);
+        }
+
+        @Override
+        public long lastModified() {
+            return 1;
+        }
+    }
+
+    private AppRepository repository;
+
+    @AfterEach
+    void close() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    @Test
+    void changeDuringBackgroundWriteIsWritten() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.blockFirstSave = true;
+        repository = new AppRepository(store);
+        repository.setFlushDelay(10);
+
+        repository.addAll(List.of(new AppEntry("1", "A", "a/a.exe", "")));
+        assertTrue(store.saving.await(5, TimeUnit.SECONDS));
+        // 第一次写入还没有完成时修改
+        repository.addAll(List.of(new AppEntry("2", "B", "b/b.exe", "")));
+        store.release.countDown();
+
+        assertTrue(waitFor(() -> store.content.size() == 2), "change made during a write was not flushed");
+    }
+
+    @Test
+    void failedBackgroundWriteIsRetried() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.failures.set(1);
+        repository = new AppRepository(store);
+        repository.setFlushDelay(10);
+
+        repository.addAll(List.of(new AppEntry("1", "A", "a/a.exe", "")));
+
+        assertTrue(waitFor(() -> store.content.size() == 1), "failed write was not retried");
+        assertEquals(0, store.failures.get());
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+}
@@ -0,0 +1,108 @@
+package cn.yenmor.portableappmanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockPatchTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * 生成从oldData到newData的补丁，应用到旧文件上并检查结果
+     * @return 补丁中直接保存的数据量
+     */
+    private long roundTrip(byte[] oldData, byte[] newData) throws IOException, NoSuchAlgorithmException {
+        File newFile = dir.resolve("new.bin").toFile();
+        Files.write(newFile.toPath(), newData);
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        BlockPatch.Result result = BlockPatch.create(new ByteArrayInputStream(oldData), oldData.length, newFile, patch);
+
+        CRC32 crc = new CRC32();
+        crc.update(newData);
+        assertEquals(crc.getValue(), result.crc());
+        assertEquals(newData.length, result.size());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(newData), result.sha256());
+
+        File target = dir.resolve("target.bin").toFile();
+        Files.write(target.toPath(), oldData);
+        assertEquals(newData.length, BlockPatch.apply(new ByteArrayInputStream(patch.toByteArray()), target));
+        assertArrayEquals(newData, Files.readAllBytes(target.toPath()));
+        return result.literalBytes();
+    }
+
+    @Test
+    void identicalFileOnlyStoresPartialLastBlock() throws Exception {
+        byte[] data = random(500_000, 1);
+        int blockSize = BlockPatch.blockSizeFor(data.length);
+        assertEquals(data.length % blockSize, roundTrip(data, data));
+        byte[] aligned = Arrays.copyOf(data, blockSize * 100);
+        assertEquals(0, roundTrip(aligned, aligned));
+    }
+
+    @Test
+    void localEditsOnlyStoreChangedData() throws Exception {
+        byte[] oldData = random(1_000_000, 2);
+        byte[] newData = new byte[oldData.length + 333];
+        System.arraycopy(oldData, 0, newData, 0, 400_000);
+        System.arraycopy(random(333, 3), 0, newData, 400_000, 333);   // 插入
+        System.arraycopy(oldData, 400_000, newData, 400_333, oldData.length - 400_000);
+        newData[100] ^= 1;                                              // 修改
+        newData[900_000] ^= 7;
+
+        long literal = roundTrip(oldData, newData);
+        assertTrue(literal < 4 * BlockPatch.blockSizeFor(oldData.length) + 333, "literal bytes: " + literal);
+    }
+
+    @Test
+    void unrelatedAndEmptyFiles() throws Exception {
+        byte[] oldData = random(100_000, 4);
+        byte[] newData = random(70_000, 5);
+        assertEquals(newData.length, roundTrip(oldData, newData));
+        assertEquals(0, roundTrip(oldData, new byte[0]));
+        assertEquals(newData.length, roundTrip(new byte[0], newData));
+    }
+
+    @Test
+    void modifiedTargetIsRejectedAndKept() throws Exception {
+        byte[] oldData = random(200_000, 6);
+        byte[] newData = oldData.clone();
+        newData[1000] ^= 1;
+        File newFile = dir.resolve("new.bin").toFile();
+        Files.write(newFile.toPath(), newData);
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        BlockPatch.create(new ByteArrayInputStream(oldData), oldData.length, newFile, patch);
+
+        // 长度相同但内容不同的目标：复制的块不对，结果校验失败
+        byte[] changed = oldData.clone();
+        changed[150_000] ^= 1;
+        File target = dir.resolve("target.bin").toFile();
+        Files.write(target.toPath(), changed);
+        assertThrows(IOException.class, () -> BlockPatch.apply(new ByteArrayInputStream(patch.toByteArray()), target));
+        assertArrayEquals(changed, Files.readAllBytes(target.toPath()));
+
+        // 长度不同的目标
+        Files.write(target.toPath(), Arrays.copyOf(oldData, oldData.length - 1));
+        assertThrows(IOException.class, () -> BlockPatch.apply(new ByteArrayInputStream(patch.toByteArray()), target));
+    }
+}
@@ -0,0 +1,126 @@
+package cn.yenmor.portableappmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalConfigStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void createEmptyConfig() throws IOException {
+        Files.writeString(dir.resolve("config.json"), "[]");
+    }
+
+    private JournalConfigStore newStore() {
+        return new JournalConfigStore(dir.resolve("config.snapshot.json").toFile(),
+                dir.resolve("config.journal").toFile(), dir.resolve("config.json").toFile());
+    }
+
+    private File journal() {
+        return dir.resolve("config.journal").toFile();
+    }
+
+    private static AppEntry app(String id, String name) {
+        return new AppEntry(id, name, name + "/" + name + ".exe", "");
+    }
+
+    private static List<String> names(List<AppEntry> apps) {
+        return apps.stream().map(app -> app.getId() + ":" + app.getName()).toList();
+    }
+
+    @Test
+    void importsConfigJsonOnFirstLoad() throws IOException {
+        new JsonConfigStore(dir.resolve("config.json").toFile()).save(List.of(), List.of(app("1", "A"), app("2", "B")));
+        assertEquals(List.of("1:A", "2:B"), names(newStore().load()));
+        // 之后只读取快照和日志
+        Files.delete(dir.resolve("config.json"));
+        assertEquals(List.of("1:A", "2:B"), names(newStore().load()));
+    }
+
+    @Test
+    void replaysJournalAfterCompaction() throws IOException {
+        JournalConfigStore store = newStore();
+        List<AppEntry> saved = store.load();
+        List<AppEntry> apps = List.of(app("1", "A"), app("2", "B"), app("3", "C"));
+        store.save(saved, apps);
+        saved = apps;
+
+        store.compact(saved);
+        apps = List.of(app("1", "A"), app("3", "C2"), app("4", "D"));
+        store.save(saved, apps);
+        saved = apps;
+        apps = List.of(app("1", "A"), app("3", "C2"), app("4", "D2"), app("5", "E"));
+        store.save(saved, apps);
+
+        JournalConfigStore reopened = newStore();
+        assertEquals(List.of("1:A", "3:C2", "4:D2", "5:E"), names(reopened.load()));
+
+        // 重新打开的存储继续在同一代的日志上追加
+        saved = apps;
+        apps = List.of(app("5", "E"), app("1", "A"));
+        reopened.save(saved, apps);
+        assertEquals(List.of("5:E", "1:A"), names(newStore().load()));
+    }
+
+    @Test
+    void interruptedCompactionKeepsSnapshot() throws IOException {
+        JournalConfigStore store = newStore();
+        List<AppEntry> saved = store.load();
+        List<AppEntry> apps = List.of(app("1", "A"), app("2", "B"));
+        store.save(saved, apps);
+
+        // 模拟写入新快照之后、替换日志之前中断：快照是新一代，日志仍是上一代
+        Path oldJournal = dir.resolve("old.journal");
+        Files.copy(journal().toPath(), oldJournal);
+        store.compact(List.of(app("1", "A"), app("2", "B2")));
+        Files.copy(oldJournal, journal().toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(List.of("1:A", "2:B2"), names(newStore().load()));
+    }
+
+    @Test
+    void discardsTornLastRecord() throws IOException {
+        JournalConfigStore store = newStore();
+        List<AppEntry> saved = store.load();
+        List<AppEntry> apps = List.of(app("1", "A"));
+        store.save(saved, apps);
+        long size = journal().length();
+        Files.write(journal().toPath(), "[{\"put\":{\"id\":\"2\"".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        JournalConfigStore reopened = newStore();
+        List<AppEntry> loaded = reopened.load();
+        assertEquals(List.of("1:A"), names(loaded));
+        assertEquals(size, journal().length());
+
+        // 截断后追加的记录可以正常重放
+        List<AppEntry> next = new ArrayList<>(loaded);
+        next.add(app("3", "C"));
+        reopened.save(loaded, next);
+        assertEquals(List.of("1:A", "3:C"), names(newStore().load()));
+    }
+
+    @Test
+    void keepsDuplicateIds() throws IOException {
+        JournalConfigStore store = newStore();
+        List<AppEntry> saved = store.load();
+        List<AppEntry> apps = List.of(app("1", "A"), app("1", "A2"), app("2", "B"));
+        store.save(saved, apps);
+        assertEquals(List.of("1:A", "1:A2", "2:B"), names(newStore().load()));
+    }
+}
@@ -0,0 +1,107 @@
+package cn.yenmor.portableappmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 配置文件读写的基准测试：流式读写（格式化和紧凑）与原来先生成完整字符串的Gson方式比较
+ * 不是单元测试，手动运行：
+ * java -cp target/classes:target/test-classes:gson.jar cn.yenmor.portableappmanager.JsonConfigStoreBenchmark [条目数] [轮数]
+ * 输出每轮的耗时和当前线程分配的内存，取预热之后的结果
+ */
+public class JsonConfigStoreBenchmark {
+    private static final Gson pretty = new GsonBuilder().setPrettyPrinting().create();
+    private static final Type APP_LIST_TYPE = new TypeToken<List<AppEntry>>(){}.getType();
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<AppEntry> apps = createApps(count);
+        File file = File.createTempFile("config-benchmark", ".json");
+        file.deleteOnExit();
+
+        JsonConfigStore prettyStore = new JsonConfigStore(file, false);
+        JsonConfigStore compactStore = new JsonConfigStore(file, true);
+        prettyStore.save(List.of(), apps);
+        if (!Files.readString(file.toPath(), StandardCharsets.UTF_8).equals(pretty.toJson(apps))) {
+            throw new IllegalStateException("Pretty output differs from Gson output");
+        }
+        long prettySize = file.length();
+        compactStore.save(List.of(), apps);
+        long compactSize = file.length();
+        System.out.printf("%d entries, %.1f MB pretty / %.1f MB compact%n", count, prettySize / 1e6, compactSize / 1e6);
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("round " + round);
+            // 原来的方式：完整的JSON字符串
+            measure("tree save   ", () -> JsonConfigStore.replaceFile(file, pretty.toJson(apps)));
+            measure("tree load   ", () -> {
+                List<AppEntry> loaded = pretty.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8),
+                        APP_LIST_TYPE);
+                check(loaded, count);
+            });
+            measure("stream save ", () -> prettyStore.save(List.of(), apps));
+            measure("stream load ", () -> check(prettyStore.load(), count));
+            measure("compact save", () -> compactStore.save(List.of(), apps));
+            measure("compact load", () -> check(compactStore.load(), count));
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static List<AppEntry> createApps(int count) {
+        List<AppEntry> apps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AppEntry app = new AppEntry(Integer.toHexString(0x10000000 + i), "应用 App " + i,
+                    "Apps/Tool" + i + "/bin/tool.exe", "./PortableAppManager/icons/" + i + ".png");
+            if (i % 10 == 0) {
+                app.setExcludes(List.of("*.log", "cache/"));
+            }
+            apps.add(app);
+        }
+        return apps;
+    }
+
+    private static void check(List<AppEntry> apps, int count) {
+        if (apps.size() != count) {
+            throw new IllegalStateException("Loaded " + apps.size() + " entries, expected " + count);
+        }
+    }
+
+    private static void measure(String name, Task task) throws Exception {
+        System.gc();
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        task.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        allocated = allocatedBytes() - allocated;
+        System.out.printf("  %s %6d ms  %8.1f MB allocated%n", name, millis, allocated / 1e6);
+    }
+
+    /**
+     * 当前线程分配的内存（HotSpot的com.sun.management扩展，不可用时为0）
+     */
+    private static long allocatedBytes() {
+        try {
+            Object threads = ManagementFactory.getThreadMXBean();
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (long) method.invoke(threads, Thread.currentThread().threadId());
+        } catch (ReflectiveOperationException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package cn.yenmor.portableappmanager;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 导出后再导入，逐字节比较导入的应用目录与原目录
+ * 应用路径相对于工作目录（Maven测试时为target/test-work），每个测试使用自己的源目录，导入到各自的临时目录
+ */
+class PackageRoundTripTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void prepareWorkingDirectory() throws IOException {
+        Files.createDirectories(Paths.get("PortableAppManager"));
+        // 删除上次运行留下的源目录
+        for (String root : List.of("plain", "dedup", "solid", "delta")) {
+            Path path = Paths.get(root);
+            if (Files.exists(path)) {
+                try (Stream<Path> paths = Files.walk(path)) {
+                    for (Path file : paths.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void write(String path, int size, long seed) throws IOException {
+        Path file = Paths.get(path);
+        Files.createDirectories(file.getParent());
+        Random random = new Random(seed);
+        byte[] data = new byte[size];
+        // 只用少数几个字符，使数据可以压缩
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+        Files.write(file, data);
+    }
+
+    /**
+     * 创建一个应用：可执行文件、一个较大的文件、一个空文件和一些小文件
+     */
+    private static AppEntry createApp(String root, String id, String name, long seed) throws IOException {
+        String base = root + "/" + name;
+        write(base + "/" + name + ".exe", 1000, seed);
+        write(base + "/lib/big.dll", 2_000_000, seed + 1);
+        write(base + "/lib/empty.dat", 0, seed + 2);
+        for (int i = 0; i < 40; i++) {
+            write(base + "/data/f" + i + ".txt", 100 + i * 37, seed + 10 + i);
+        }
+        return new AppEntry(id, name, base + "/" + name + ".exe", "");
+    }
+
+    private static Map<String, byte[]> readTree(Path root) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                files.put(root.relativize(path).toString().replace('\\', '/'), Files.readAllBytes(path));
+            }
+        }
+        return files;
+    }
+
+    private static Path appDir(AppEntry app) {
+        return Paths.get(app.getPath()).getParent();
+    }
+
+    private static void assertSameTree(Path expected, Path actual) throws IOException {
+        Map<String, byte[]> left = readTree(expected);
+        Map<String, byte[]> right = readTree(actual);
+        assertEquals(left.keySet(), right.keySet());
+        for (Map.Entry<String, byte[]> entry : left.entrySet()) {
+            assertArrayEquals(entry.getValue(), right.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    /**
+     * 导入的应用保留相对路径，文件位于目标基础路径下
+     */
+    private static void assertImported(List<AppEntry> sources, List<AppEntry> imported, String target)
+            throws IOException {
+        assertEquals(sources.size(), imported.size());
+        for (int i = 0; i < sources.size(); i++) {
+            assertEquals(sources.get(i).getPath(), imported.get(i).getPath());
+            assertSameTree(appDir(sources.get(i)), Paths.get(target).resolve(appDir(imported.get(i))));
+        }
+    }
+
+    private List<AppEntry> importFile(Path zip, String name, ImportOptions options) {
+        String target = dir.resolve(name).toString();
+        return PackageManager.importPackage(zip.toString(), target, ImportStrategy.RENAME, options, null);
+    }
+
+    private List<AppEntry> importStream(Path zip, String name, ImportOptions options) throws IOException {
+        String target = dir.resolve(name).toString();
+        try (InputStream in = Files.newInputStream(zip)) {
+            return PackageManager.importPackage(in, target, ImportStrategy.RENAME, options, null);
+        }
+    }
+
+    @Test
+    void plainPackage() throws IOException {
+        List<AppEntry> apps = List.of(createApp("plain", "p1", "PlainA", 1), createApp("plain", "p2", "PlainB", 2));
+        Path zip = dir.resolve("plain.zip");
+        assertTrue(PackageManager.exportApps(apps, zip.toString(), null));
+        assertEquals(PackageMetadata.FORMAT_V1, PackageManager.previewPackage(zip.toString()).getMetadata().getVersion());
+
+        String target = dir.resolve("file").toString();
+        assertImported(apps, importFile(zip, "file", new ImportOptions()), target);
+        target = dir.resolve("stream").toString();
+        assertImported(apps, importStream(zip, "stream", new ImportOptions()), target);
+    }
+
+    @Test
+    void deduplicatedPackage() throws IOException {
+        AppEntry first = createApp("dedup", "d1", "DedupA", 3);
+        AppEntry second = createApp("dedup", "d2", "DedupB", 4);
+        // 两个应用中相同的大文件和小文件
+        Files.copy(appDir(first).resolve("lib/big.dll"), appDir(second).resolve("lib/big.dll"),
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(appDir(first).resolve("data/f5.txt"), appDir(second).resolve("data/copy.txt"));
+        List<AppEntry> apps = List.of(first, second);
+
+        Path plain = dir.resolve("plain.zip");
+        Path dedup = dir.resolve("dedup.zip");
+        ExportOptions options = new ExportOptions();
+        options.setDeduplicate(true);
+        assertTrue(PackageManager.exportApps(apps, plain.toString(), null));
+        assertTrue(PackageManager.exportApps(apps, dedup.toString(), null, options));
+        assertTrue(Files.size(dedup) < Files.size(plain) - 400_000);
+        try (ZipFile zip = new ZipFile(dedup.toFile())) {
+            assertNull(zip.getEntry("dedup/DedupB/lib/big.dll"));
+            assertNotNull(zip.getEntry(PackageIndex.ENTRY_NAME));
+        }
+        assertFalse(PackageManager.previewPackage(dedup.toString()).getBlobs().isEmpty());
+
+        assertImported(apps, importFile(dedup, "file", new ImportOptions()), dir.resolve("file").toString());
+        assertImported(apps, importStream(dedup, "stream", new ImportOptions()), dir.resolve("stream").toString());
+
+        // 只导入第二个应用：它引用的内容在第一个应用中
+        ImportOptions selected = new ImportOptions();
+        selected.setAppIds(Set.of("d2"));
+        assertImported(List.of(second), importFile(dedup, "selected-file", selected),
+                dir.resolve("selected-file").toString());
+        assertImported(List.of(second), importStream(dedup, "selected-stream", selected),
+                dir.resolve("selected-stream").toString());
+        assertFalse(Files.exists(dir.resolve("selected-stream/dedup/DedupA")));
+    }
+
+    @Test
+    void solidPackage() throws IOException {
+        List<AppEntry> apps = List.of(createApp("solid", "s1", "SolidA", 5), createApp("solid", "s2", "SolidB", 6));
+        Path zip = dir.resolve("solid.zip");
+        ExportOptions options = new ExportOptions();
+        options.setSolid(true);
+        assertTrue(PackageManager.exportApps(apps, zip.toString(), null, options));
+        assertFalse(PackageManager.previewPackage(zip.toString()).getSolidBlocks().isEmpty());
+
+        assertImported(apps, importFile(zip, "file", new ImportOptions()), dir.resolve("file").toString());
+        assertImported(apps, importStream(zip, "stream", new ImportOptions()), dir.resolve("stream").toString());
+
+        // 只导入一个应用时只解出它的文件
+        ImportOptions selected = new ImportOptions();
+        selected.setAppIds(Set.of("s2"));
+        assertImported(List.of(apps.get(1)), importFile(zip, "selected", selected), dir.resolve("selected").toString());
+    }
+
+    @Test
+    void deltaPackageWithBinaryPatch() throws IOException {
+        AppEntry app = createApp("delta", "t1", "DeltaA", 7);
+        Path appDir = appDir(app);
+        Path full = dir.resolve("full.zip");
+        assertTrue(PackageManager.exportApps(List.of(app), full.toString(), null));
+        String target = dir.resolve("installed").toString();
+        List<AppEntry> installed = PackageManager.importPackage(full.toString(), target, ImportStrategy.RENAME,
+                new ImportOptions(), null);
+        assertImported(List.of(app), installed, target);
+
+        // 修改大文件中的几处、删除和添加文件
+        byte[] big = Files.readAllBytes(appDir.resolve("lib/big.dll"));
+        big[100] ^= 1;
+        big[1_500_000] ^= 7;
+        Files.write(appDir.resolve("lib/big.dll"), big);
+        Files.delete(appDir.resolve("data/f3.txt"));
+        write(appDir + "/data/new.txt", 5000, 99);
+
+        Path delta = dir.resolve("delta.zip");
+        ExportOptions options = new ExportOptions();
+        options.setBaselinePackage(full.toString());
+        options.setDelta(true);
+        options.setBinaryPatch(true);
+        assertTrue(PackageManager.exportApps(List.of(app), delta.toString(), null, options));
+        assertTrue(PackageManager.previewPackage(delta.toString()).getMetadata().isDelta());
+        assertTrue(Files.size(delta) < Files.size(full) / 4, "delta size " + Files.size(delta));
+
+        List<AppEntry> updated = PackageManager.importPackage(delta.toString(), target, ImportStrategy.REPLACE,
+                new ImportOptions(), null);
+        assertImported(List.of(app), updated, target);
+    }
+}
@@ -0,0 +1,166 @@
+package cn.yenmor.portableappmanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipArchiveWriterTest {
+
+    private static long millis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 写入一个存储的条目，再用JDK读取其修改时间
+     */
+    private static LocalDateTime roundTripTime(long time) throws IOException {
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Channels.newChannel(out))) {
+            writer.putEntry("a.txt", ZipEntry.STORED, time, crc.getValue(), data.length, data.length);
+            writer.write(data, 0, data.length);
+        }
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry = in.getNextEntry();
+            assertNotNull(entry);
+            assertArrayEquals(data, in.readAllBytes());
+            return LocalDateTime.ofInstant(entry.getLastModifiedTime().toInstant(), ZoneId.systemDefault());
+        }
+    }
+
+    @Test
+    void dosTimeKeepsDatesInRange() throws IOException {
+        LocalDateTime time = LocalDateTime.of(2024, 5, 17, 13, 45, 30);
+        assertEquals(time, roundTripTime(millis(time)));
+    }
+
+    @Test
+    void dosTimeClampsDatesOutOfRange() throws IOException {
+        assertEquals(LocalDateTime.of(1980, 1, 1, 0, 0), roundTripTime(millis(LocalDateTime.of(1970, 6, 1, 12, 0))));
+        assertEquals(LocalDateTime.of(2107, 12, 31, 23, 59, 58),
+                roundTripTime(millis(LocalDateTime.of(2200, 3, 1, 8, 30))));
+    }
+
+    @Test
+    void writtenEntriesCanBeReadBack(@TempDir Path dir) throws IOException {
+        byte[] stored = "stored entry".getBytes(StandardCharsets.UTF_8);
+        byte[] text = "deflated entry ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(text);
+        Path zip = dir.resolve("test.zip");
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(FileChannel.open(zip,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+            writer.putEntry("dir/a.txt", ZipEntry.STORED, 0, crc(stored), stored.length, stored.length);
+            writer.write(stored, 0, stored.length);
+            writer.putEntry("dir/b.txt", ZipEntry.DEFLATED, 0, crc(text), deflated.length, text.length);
+            writer.write(deflated, 0, deflated.length);
+            assertThrows(IOException.class, () -> writer.putEntry("dir/a.txt", ZipEntry.STORED, 0, 0, 0, 0));
+        }
+
+        try (ZipArchiveReader reader = ZipArchiveReader.open(zip)) {
+            assertEquals(List.of("dir/a.txt", "dir/b.txt"), reader.entries().stream().map(ZipArchiveReader.Entry::name).toList());
+            assertArrayEquals(stored, read(reader, "dir/a.txt"));
+            assertArrayEquals(text, read(reader, "dir/b.txt"));
+            assertEquals(ZipEntry.DEFLATED, reader.getEntry("dir/b.txt").method());
+        }
+        try (ZipFile jdk = new ZipFile(zip.toFile())) {
+            assertArrayEquals(text, jdk.getInputStream(jdk.getEntry("dir/b.txt")).readAllBytes());
+        }
+    }
+
+    @Test
+    void copiedEntriesKeepTheirData(@TempDir Path dir) throws IOException {
+        byte[] data = new byte[100_000];
+        new Random(1).nextBytes(data);
+        byte[] deflated = deflate(data);
+        Path source = dir.resolve("source.zip");
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(FileChannel.open(source,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+            writer.putEntry("data.bin", ZipEntry.DEFLATED, 0, crc(data), deflated.length, data.length);
+            writer.write(deflated, 0, deflated.length);
+        }
+
+        Path copy = dir.resolve("copy.zip");
+        try (ZipArchiveReader reader = ZipArchiveReader.open(source);
+             ZipArchiveWriter writer = new ZipArchiveWriter(FileChannel.open(copy,
+                     StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+            writer.copyEntry(reader, reader.getEntry("data.bin"), "renamed.bin", 0);
+        }
+        try (ZipArchiveReader reader = ZipArchiveReader.open(copy)) {
+            assertArrayEquals(data, read(reader, "renamed.bin"));
+        }
+    }
+
+    @Test
+    void manyEntriesUseZip64(@TempDir Path dir) throws IOException {
+        int count = 70_000;    // 超过普通中央目录的65535个条目上限
+        Path zip = dir.resolve("many.zip");
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(FileChannel.open(zip,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+            for (int i = 0; i < count; i++) {
+                byte[] data = Integer.toString(i).getBytes(StandardCharsets.UTF_8);
+                writer.putEntry("f" + i, ZipEntry.STORED, 0, crc(data), data.length, data.length);
+                writer.write(data, 0, data.length);
+            }
+        }
+
+        try (ZipArchiveReader reader = ZipArchiveReader.open(zip)) {
+            assertEquals(count, reader.entries().size());
+            assertEquals("69999", new String(read(reader, "f69999"), StandardCharsets.UTF_8));
+        }
+        try (ZipFile jdk = new ZipFile(zip.toFile())) {
+            assertEquals(count, jdk.size());
+            assertEquals("65536", new String(jdk.getInputStream(jdk.getEntry("f65536")).readAllBytes(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] read(ZipArchiveReader reader, String name) throws IOException {
+        ZipArchiveReader.Entry entry = reader.getEntry(name);
+        assertNotNull(entry, name);
+        try (InputStream in = reader.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+}